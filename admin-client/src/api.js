@@ -36,8 +36,9 @@ export const addTestCase = async (questionId, testCaseData) => {
     return response.data;
 };
 
-export const fetchSubmissions = async () => {
-    const response = await api.get('/admin/submissions');
+// Returns { items, nextCursor }; pass nextCursor back as cursor for the next (older) page
+export const fetchSubmissions = async (cursor) => {
+    const response = await api.get('/admin/submissions', { params: cursor ? { cursor } : {} });
     return response.data;
 };
 
@@ -23,6 +23,7 @@ function AdminDashboard({ onLogout, user }) {
     const [studentEmail, setStudentEmail] = useState("");
     const [genResult, setGenResult] = useState(null);
     const [submissions, setSubmissions] = useState([]);
+    const [submissionsCursor, setSubmissionsCursor] = useState(null);
     const [sessionsStatus, setSessionsStatus] = useState("");
 
     useEffect(() => {
@@ -34,8 +35,9 @@ function AdminDashboard({ onLogout, user }) {
         try {
             const qs = await fetchQuestions();
             setQuestions(qs);
-            const subs = await fetchSubmissions();
-            setSubmissions(subs);
+            const page = await fetchSubmissions();
+            setSubmissions(page.items);
+            setSubmissionsCursor(page.nextCursor);
         } catch (err) {
             console.error(err);
         } finally {
@@ -43,6 +45,16 @@ function AdminDashboard({ onLogout, user }) {
         }
     };
 
+    const loadMoreSubmissions = async () => {
+        try {
+            const page = await fetchSubmissions(submissionsCursor);
+            setSubmissions(prev => [...prev, ...page.items]);
+            setSubmissionsCursor(page.nextCursor);
+        } catch (err) {
+            console.error(err);
+        }
+    };
+
     const handleCreateQuestion = async (data) => {
         try {
             await createQuestion(data);
@@ -154,9 +166,9 @@ function AdminDashboard({ onLogout, user }) {
                                         <tr key={s.id} className="hover:bg-slate-50 transition-colors">
                                             <td className="px-6 py-4 font-mono text-sm text-slate-600">#{s.id}</td>
                                             <td className="px-6 py-4">
-                                                <div className="font-bold text-slate-800">{s.user?.username || 'Unknown'}</div>
+                                                <div className="font-bold text-slate-800">{s.username || 'Unknown'}</div>
                                             </td>
-                                            <td className="px-6 py-4 text-slate-600">{s.question?.title || 'Unknown'}</td>
+                                            <td className="px-6 py-4 text-slate-600">{s.questionTitle || 'Unknown'}</td>
                                             <td className="px-6 py-4">
                                                 <span className={`px-2.5 py-1 rounded-lg text-[11px] font-bold uppercase ${s.status === 'ACCEPTED' || s.status === 'PASSED' ? 'bg-emerald-100 text-emerald-700' :
                                                     s.status === 'QUEUED' || s.status === 'RUNNING' ? 'bg-amber-100 text-amber-700' : 'bg-rose-100 text-rose-700'
@@ -169,6 +181,14 @@ function AdminDashboard({ onLogout, user }) {
                                     ))}
                                 </tbody>
                             </table>
+                            {submissionsCursor && (
+                                <button
+                                    onClick={loadMoreSubmissions}
+                                    className="w-full px-6 py-4 text-sm font-bold text-indigo-600 hover:bg-slate-50 border-t border-slate-100 transition-colors"
+                                >
+                                    Load more
+                                </button>
+                            )}
                         </div>
                     </div>
                 );
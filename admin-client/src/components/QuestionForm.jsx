@@ -9,7 +9,8 @@ function QuestionForm({ onSubmit, initialData = null }) {
         difficulty: initialData?.difficulty || "EASY",
         starterCode: initialData?.starterCode || "// Write your code here\n",
         timeLimit: initialData?.timeLimit || 2000,
-        memoryLimit: initialData?.memoryLimit || 128
+        memoryLimit: initialData?.memoryLimit || 128,
+        parallelTests: initialData?.parallelTests || false
     });
 
     const [testCases, setTestCases] = useState(() => {
@@ -24,8 +25,8 @@ function QuestionForm({ onSubmit, initialData = null }) {
     });
 
     const handleChange = (e) => {
-        const { name, value } = e.target;
-        setFormData(prev => ({ ...prev, [name]: value }));
+        const { name, value, type, checked } = e.target;
+        setFormData(prev => ({ ...prev, [name]: type === "checkbox" ? checked : value }));
     };
 
     const addTestCase = (hidden = false) => {
@@ -113,6 +114,17 @@ function QuestionForm({ onSubmit, initialData = null }) {
                             />
                         </div>
                     </div>
+
+                    <label className="flex items-center gap-2 text-sm font-semibold text-slate-700">
+                        <input
+                            type="checkbox"
+                            name="parallelTests"
+                            checked={formData.parallelTests}
+                            onChange={handleChange}
+                            className="h-4 w-4 rounded border-slate-300 text-indigo-600 focus:ring-indigo-500"
+                        />
+                        Run test cases in parallel
+                    </label>
                 </div>
 
                 <div className="space-y-4">
@@ -0,0 +1,20 @@
+package com.example.DAO;
+
+import java.time.LocalDateTime;
+
+/** The columns of a submission that judging needs; the question itself comes from the QuestionCache. */
+public interface SubmissionForJudging {
+    Long getId();
+
+    String getCode();
+
+    String getType();
+
+    String getStatus();
+
+    LocalDateTime getCreatedAt();
+
+    Long getVersion();
+
+    Long getQuestionId();
+}
@@ -3,13 +3,37 @@ package com.example.DAO;
 import com.example.bean.Submission;
 import com.example.bean.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface SubmissionRepository extends JpaRepository<Submission, Long> {
     List<Submission> findByUser(User user);
 
     List<Submission> findByUserOrderByCreatedAtDesc(User user);
+
+    @Query("select s.id as id, s.code as code, s.type as type, s.status as status, s.createdAt as createdAt, "
+            + "s.version as version, s.question.id as questionId "
+            + "from Submission s where s.id = :id")
+    Optional<SubmissionForJudging> findForJudging(@Param("id") Long id);
+
+    /**
+     * Writes only status and result metadata, if nobody else updated the row
+     * since {@code version} was read and it is still QUEUED or PROCESSING; a
+     * final verdict is never overwritten, however late a duplicate delivery
+     * arrives. Returns the number of rows updated (0 on a conflict).
+     */
+    @Transactional
+    @Modifying
+    @Query("update Submission s set s.status = :status, s.resultMetadata = :resultMetadata, "
+            + "s.version = coalesce(s.version, 0) + 1 where s.id = :id and coalesce(s.version, 0) = :version "
+            + "and s.status in ('QUEUED', 'PROCESSING')")
+    int updateResult(@Param("id") Long id, @Param("version") Long version, @Param("status") String status,
+            @Param("resultMetadata") String resultMetadata);
 }
@@ -28,6 +28,9 @@ public class Question {
     @Column(name = "memory_limit")
     private Integer memoryLimit = 128;
 
+    @Column(name = "parallel_tests")
+    private Boolean parallelTests = false;
+
     @Column(name = "visible_test_cases_json", columnDefinition = "TEXT")
     private String visibleTestCasesJson;
 
@@ -91,6 +94,14 @@ public class Question {
         this.memoryLimit = memoryLimit;
     }
 
+    public Boolean getParallelTests() {
+        return parallelTests;
+    }
+
+    public void setParallelTests(Boolean parallelTests) {
+        this.parallelTests = parallelTests;
+    }
+
     public String getVisibleTestCasesJson() {
         return visibleTestCasesJson;
     }
@@ -26,7 +26,7 @@ public class Submission {
     private String language;
 
     @Column(nullable = false)
-    private String status = "QUEUED"; // QUEUED, PROCESSING, ACCEPTED, WRONG_ANSWER, ERROR
+    private String status = "QUEUED"; // QUEUED, PROCESSING, ACCEPTED, WRONG_ANSWER, COMPILATION_ERROR, ERROR, SUPERSEDED
 
     @Column(name = "result_metadata", columnDefinition = "TEXT")
     private String resultMetadata; // JSON string
@@ -37,6 +37,9 @@ public class Submission {
     @Column(name = "created_at")
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    @Column(name = "version")
+    private Long version = 0L; // bumped by every status/result update from the judge
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -109,4 +112,12 @@ public class Submission {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,197 @@
+package com.example.compiler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Disk-backed, content-addressed cache of compiled binaries. Entries are keyed
+ * by a SHA-256 of language, compiler image, flags and source, so byte-identical
+ * submissions (starter code, resubmits, rejudges) skip compilation entirely.
+ * The total size is capped and the least recently used entries are evicted.
+ */
+@Component
+public class BinaryCache {
+
+    private static final String SUFFIX = ".bin";
+
+    @Value("${compiler.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${compiler.cache.dir:./cache/binaries}")
+    private String cacheDir;
+
+    @Value("${compiler.cache.max-bytes:536870912}")
+    private long maxBytes;
+
+    // Access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path dir = Paths.get(cacheDir);
+        Files.createDirectories(dir);
+
+        // Rebuild the LRU order from file modification times, which are bumped on every hit
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList();
+        }
+        List<Map.Entry<Path, FileTime>> ordered = new ArrayList<>();
+        for (Path file : files) {
+            ordered.add(Map.entry(file, Files.getLastModifiedTime(file)));
+        }
+        ordered.sort(Map.Entry.comparingByValue());
+        synchronized (this) {
+            for (Map.Entry<Path, FileTime> entry : ordered) {
+                String name = entry.getKey().getFileName().toString();
+                long size = Files.size(entry.getKey());
+                entries.put(name.substring(0, name.length() - SUFFIX.length()), size);
+                totalBytes += size;
+            }
+            evictIfNeeded();
+        }
+        System.out.println("BinaryCache: loaded " + entries.size() + " entries (" + totalBytes + " bytes)");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** SHA-256 over the given parts, e.g. language, compiler image, flags and source. */
+    public static String key(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                byte[] bytes = (part != null ? part : "").getBytes(StandardCharsets.UTF_8);
+                // Length prefix keeps ("ab", "c") and ("a", "bc") apart
+                digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Copies the cached binary for {@code key} to {@code target}. Returns false on
+     * a miss, or when the entry disappeared underneath us (another node evicted it).
+     */
+    public boolean copyTo(String key, Path target) {
+        if (!enabled) {
+            return false;
+        }
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return false;
+            }
+        }
+        Path file = pathFor(key);
+        try {
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.copy(file, tmp, StandardCopyOption.REPLACE_EXISTING);
+            tmp.toFile().setExecutable(true, false);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            synchronized (this) {
+                Long size = entries.remove(key);
+                if (size != null) {
+                    totalBytes -= size;
+                }
+            }
+            misses.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Stores a freshly compiled binary. The file is written under a temporary
+     * name and atomically renamed, so concurrent readers never observe a
+     * partially written binary.
+     */
+    public void store(String key, Path binary) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long size = Files.size(binary);
+            if (size > maxBytes) {
+                return;
+            }
+            Path file = pathFor(key);
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.copy(binary, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                Long previous = entries.put(key, size);
+                if (previous != null) {
+                    totalBytes -= previous;
+                }
+                totalBytes += size;
+                evictIfNeeded();
+            }
+            stores.incrementAndGet();
+        } catch (IOException e) {
+            System.err.println("BinaryCache: failed to store " + key + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        metrics.put("enabled", enabled);
+        metrics.put("entries", entries.size());
+        metrics.put("bytes", totalBytes);
+        metrics.put("maxBytes", maxBytes);
+        metrics.put("hits", h);
+        metrics.put("misses", m);
+        metrics.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        metrics.put("stores", stores.get());
+        metrics.put("evictions", evictions.get());
+        return metrics;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue();
+            evictions.incrementAndGet();
+            try {
+                Files.deleteIfExists(pathFor(eldest.getKey()));
+            } catch (IOException e) {
+                System.err.println("BinaryCache: failed to evict " + eldest.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Path pathFor(String key) {
+        return Paths.get(cacheDir, key + SUFFIX);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.compiler;
+
+/**
+ * Outcome of the compile phase of a submission. When {@code success} is true
+ * the binary is available at {@code out} inside the submission's work
+ * directory; otherwise {@code output} carries the compiler diagnostics.
+ */
+public record CompileResult(boolean success, String output) {
+
+    public static CompileResult ok(String output) {
+        return new CompileResult(true, output);
+    }
+
+    public static CompileResult failed(String output) {
+        return new CompileResult(false, output);
+    }
+}
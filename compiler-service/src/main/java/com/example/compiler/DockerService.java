@@ -1,14 +1,30 @@
 package com.example.compiler;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import static com.example.compiler.SandboxProcesses.*;
+
+/**
+ * Docker sandbox backend: compiles in a throwaway container and runs every
+ * test case inside a container, either a warm one from the {@link SandboxPool}
+ * or a one-shot {@code docker run} when the pool is disabled.
+ */
 @Service
-public class DockerService {
+@ConditionalOnProperty(name = "compiler.sandbox.backend", havingValue = "docker", matchIfMissing = true)
+public class DockerService implements SandboxRunner {
+
+    private static final String SOURCE_FILE = "solution.cpp";
+    private static final String BINARY_FILE = "out";
+    private static final String LANGUAGE = "cpp";
 
     @Value("${compiler.workdir}")
     private String workDirBase;
@@ -16,78 +32,265 @@ public class DockerService {
     @Value("${compiler.testcases.dir}")
     private String testCasesDirBase;
 
-    public String runCode(String submissionId, String code, String questionId, String input, int timeLimit) {
-        System.out.println("DockerService: starting runCode for submission " + submissionId + " (Hardcoded C++)");
+    @Value("${compiler.compile.timeout-ms:30000}")
+    private long compileTimeoutMs;
+
+    @Value("${compiler.compile.flags:}")
+    private String compileFlags;
+
+    @Value("${compiler.sandbox.image:gcc:latest}")
+    private String image;
+
+    @Value("${compiler.sandbox.memory:128m}")
+    private String memory;
+
+    @Value("${compiler.sandbox.cpus:0.5}")
+    private String cpus;
+
+    @Value("${compiler.sandbox.pool.exec-slack-ms:1000}")
+    private long execSlackMs;
+
+    @Value("${compiler.output.limit-bytes:8388608}")
+    private long outputLimitBytes;
+
+    @Value("${compiler.output.stderr-limit-bytes:65536}")
+    private int stderrLimitBytes;
+
+    private final SandboxPool sandboxPool;
+    private final BinaryCache binaryCache;
+    private final SandboxHarness sandboxHarness;
+
+    public DockerService(SandboxPool sandboxPool, BinaryCache binaryCache, SandboxHarness sandboxHarness) {
+        this.sandboxPool = sandboxPool;
+        this.binaryCache = binaryCache;
+        this.sandboxHarness = sandboxHarness;
+    }
+
+    /**
+     * Compiles the submission once into {@code work/<submissionId>/out}.
+     * Byte-identical sources compiled with the same image and flags are served
+     * from the {@link BinaryCache} without compiling.
+     */
+    @Override
+    public CompileResult compile(String submissionId, String code) {
+        System.out.println("DockerService: compiling submission " + submissionId + " (Hardcoded C++)");
         try {
             Path workDir = Paths.get(workDirBase, submissionId);
             Files.createDirectories(workDir);
-            System.out.println("DockerService: workDir created at " + workDir.toAbsolutePath());
-
-            String extension = "cpp";
-            String compiler = "g++";
-
-            String filename = "solution." + extension;
-            // Write source code
-            Files.writeString(workDir.resolve(filename), code);
-
-            // Docker command (Simplified for C/GCC)
-            String dockerCmd = String.format(
-                    "docker run --rm -i --memory=128m --cpus=0.5 -v %s:/usr/src/app gcc:latest sh -c \"%s /usr/src/app/%s -o /usr/src/app/out && /usr/src/app/out\"",
-                    workDir.toAbsolutePath().toString(), compiler, filename);
-
-            System.out.println("DockerService: executing command: " + dockerCmd);
-
-            ProcessBuilder pb = new ProcessBuilder("cmd.exe", "/c", dockerCmd);
-            Process process = pb.start();
-
-            // Background thread to swallow/log stderr to prevent hang
-            StringBuilder errorLog = new StringBuilder();
-            Thread errorThread = new Thread(() -> {
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        errorLog.append(line).append("\n");
-                    }
-                } catch (IOException e) {
-                    System.err.println("Error reading stderr: " + e.getMessage());
-                }
-            });
-            errorThread.start();
-
-            // Write input to stdin
-            if (input != null && !input.isEmpty()) {
-                System.out.println("DockerService: writing input to stdin...");
-                try (OutputStream os = process.getOutputStream()) {
-                    os.write(input.getBytes());
-                    os.flush();
-                }
+            Files.deleteIfExists(workDir.resolve(BINARY_FILE));
+            Files.writeString(workDir.resolve(SOURCE_FILE), code);
+
+            String cacheKey = BinaryCache.key(LANGUAGE, image, compileFlags, code);
+            if (binaryCache.copyTo(cacheKey, workDir.resolve(BINARY_FILE))) {
+                System.out.println("DockerService: binary cache hit for submission " + submissionId);
+                return CompileResult.ok("");
             }
 
-            boolean finished = process.waitFor(timeLimit + 5000, TimeUnit.MILLISECONDS); // Added extra 5s for container
-                                                                                         // overhead
-            if (!finished) {
-                System.out.println("DockerService: process TIMEOUT");
-                process.destroyForcibly();
-                return "TIMEOUT";
+            List<String> command = new ArrayList<>(List.of("docker", "run", "--rm", "--memory=512m", "--cpus=1",
+                    "-v", workDir.toAbsolutePath() + ":/usr/src/app", image, "g++"));
+            if (!compileFlags.isBlank()) {
+                command.addAll(List.of(compileFlags.trim().split("\\s+")));
             }
+            command.addAll(List.of("/usr/src/app/" + SOURCE_FILE, "-o", "/usr/src/app/" + BINARY_FILE));
 
-            errorThread.join(1000);
+            CompileResult result = runCompiler("DockerService", command, null, workDir.resolve(BINARY_FILE),
+                    compileTimeoutMs);
+            if (result.success()) {
+                System.out.println("DockerService: compilation successful for submission " + submissionId);
+                binaryCache.store(cacheKey, workDir.resolve(BINARY_FILE));
+            }
+            return result;
+
+        } catch (Exception e) {
+            System.err.println("DockerService: SYSTEM_ERROR during compile: " + e.getMessage());
+            e.printStackTrace();
+            throw new IllegalStateException("Compilation could not be started: " + e.getMessage(), e);
+        }
+    }
 
-            if (process.exitValue() != 0) {
-                String error = errorLog.toString();
-                System.out.println(
-                        "DockerService: process failed with exit code " + process.exitValue() + ". Error: " + error);
-                return "RUNTIME_ERROR\n" + error;
+    /**
+     * Runs the binary produced by {@link #compile} for one test input. Output
+     * beyond {@code compiler.output.limit-bytes} kills the run with
+     * {@code OUTPUT_LIMIT_EXCEEDED}. CPU time, wall time and peak RSS are
+     * reported by the sandbox harness.
+     */
+    @Override
+    public RunResult runBinary(String submissionId, String input, int timeLimit, StreamingComparator comparator) {
+        System.out.println("DockerService: running binary for submission " + submissionId);
+        OutputCollector collector = new OutputCollector(outputLimitBytes, comparator);
+        if (sandboxPool.isEnabled()) {
+            return runPooled(submissionId, input, timeLimit, collector);
+        }
+        Process process = null;
+        try {
+            Path workDir = Paths.get(workDirBase, submissionId);
+            Path harnessDir = sandboxHarness.ensureBuilt();
+
+            List<String> command = List.of("docker", "run", "--rm", "-i", "--network=none",
+                    "--memory=" + memory, "--memory-swap=" + memory,
+                    "--cpus=" + cpus,
+                    "--pids-limit=64",
+                    "-v", workDir.toAbsolutePath() + ":/usr/src/app:ro",
+                    "-v", harnessDir + ":" + SandboxHarness.CONTAINER_DIR + ":ro",
+                    image, SandboxHarness.CONTAINER_BINARY, String.valueOf(timeLimit), "/usr/src/app/" + BINARY_FILE);
+
+            System.out.println("DockerService: executing command: " + String.join(" ", command));
+
+            ProcessBuilder pb = new ProcessBuilder(command);
+            long started = System.nanoTime();
+            process = pb.start();
+
+            // Container start-up is not covered by the harness, so allow 5s on top
+            return awaitRun("DockerService", process, input, timeLimit + 5000L, collector, stderrLimitBytes,
+                    started);
+
+        } catch (InterruptedException e) {
+            // Cancelled (e.g. an earlier test case already failed); do not leave the container running
+            destroyTree(process);
+            Thread.currentThread().interrupt();
+            return RunResult.systemError("run cancelled");
+        } catch (Exception e) {
+            System.err.println("DockerService: SYSTEM_ERROR: " + e.getMessage());
+            e.printStackTrace();
+            destroyTree(process);
+            return RunResult.systemError(e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the binary inside a warm pooled container: the binary is copied in
+     * with {@code docker cp} and executed under the harness as an unprivileged
+     * user. The pool resets the container on release. Only the exec overhead is
+     * added to the time limit instead of a full container start.
+     */
+    private RunResult runPooled(String submissionId, String input, int timeLimit, OutputCollector collector) {
+        SandboxPool.PooledContainer container;
+        try {
+            container = sandboxPool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RunResult.systemError("interrupted while waiting for a sandbox");
+        } catch (IOException e) {
+            System.err.println("DockerService: SYSTEM_ERROR: " + e.getMessage());
+            return RunResult.systemError(e.getMessage());
+        }
+
+        boolean reusable = false;
+        Process process = null;
+        try {
+            Path binary = Paths.get(workDirBase, submissionId, BINARY_FILE).toAbsolutePath();
+            Process copy = new ProcessBuilder("docker", "cp", binary.toString(),
+                    container.getId() + ":/sandbox/" + BINARY_FILE)
+                    .redirectErrorStream(true)
+                    .start();
+            String copyOutput = new String(copy.getInputStream().readAllBytes());
+            if (!copy.waitFor(10, TimeUnit.SECONDS) || copy.exitValue() != 0) {
+                copy.destroyForcibly();
+                return RunResult.systemError("failed to copy binary into sandbox: " + copyOutput);
             }
 
-            String result = new String(process.getInputStream().readAllBytes());
-            System.out.println("DockerService: execution successful. Result length: " + result.length());
+            // The program runs as the pool's unprivileged user; the harness kills all of its processes afterwards
+            ProcessBuilder pb = new ProcessBuilder("docker", "exec", "-i", container.getId(), "sh", "-c",
+                    "chmod 755 /sandbox/" + BINARY_FILE + " && exec " + SandboxHarness.CONTAINER_BINARY
+                            + " -u " + sandboxPool.getRunAs() + " " + timeLimit + " /sandbox/" + BINARY_FILE);
+            long started = System.nanoTime();
+            process = pb.start();
+
+            // On timeout the exec client is gone but the program may still run inside; drop the container
+            RunResult result = awaitRun("DockerService", process, input, timeLimit + execSlackMs, collector,
+                    stderrLimitBytes, started);
+            // Killed from our side: the program may still be running in the container, so it is not reused
+            reusable = !collector.isLimitExceeded() && !collector.isMismatchAborted()
+                    && !"TIMEOUT".equals(result.status());
             return result;
 
+        } catch (InterruptedException e) {
+            destroyTree(process);
+            Thread.currentThread().interrupt();
+            return RunResult.systemError("run cancelled");
+        } catch (Exception e) {
+            System.err.println("DockerService: SYSTEM_ERROR: " + e.getMessage());
+            e.printStackTrace();
+            return RunResult.systemError(e.getMessage());
+        } finally {
+            sandboxPool.release(container, reusable);
+        }
+    }
+
+    /**
+     * Runs every input in one {@code docker run}: the batch directory is mounted
+     * writable next to the read-only binary and the harness loops over the cases
+     * inside the container. Each case's output file is capped at
+     * {@code compiler.output.limit-bytes}.
+     */
+    @Override
+    public List<RunResult> runBatch(String submissionId, List<String> inputs, int timeLimit, boolean stopOnFailure) {
+        System.out.println("DockerService: running batch of " + inputs.size() + " cases for submission " + submissionId);
+        String containerName = "iitj-batch-" + UUID.randomUUID();
+        Process process = null;
+        Path batchDir = null;
+        try {
+            Path workDir = Paths.get(workDirBase, submissionId).toAbsolutePath();
+            Path harnessDir = sandboxHarness.ensureBuilt();
+            batchDir = prepareBatch(workDir, inputs);
+
+            List<String> command = new ArrayList<>(List.of("docker", "run", "--rm", "--name", containerName,
+                    "--network=none",
+                    "--memory=" + memory, "--memory-swap=" + memory,
+                    "--cpus=" + cpus,
+                    "--pids-limit=64",
+                    "-v", workDir + ":/usr/src/app:ro",
+                    "-v", batchDir + ":/batch",
+                    "-v", harnessDir + ":" + SandboxHarness.CONTAINER_DIR + ":ro",
+                    image, SandboxHarness.CONTAINER_BINARY,
+                    "-f", String.valueOf(Math.max(1, outputLimitBytes / 1024)),
+                    "-b", "/batch"));
+            if (stopOnFailure) {
+                command.add("-s");
+            }
+            command.addAll(List.of(String.valueOf(timeLimit), "/usr/src/app/" + BINARY_FILE));
+
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            process = pb.start();
+
+            // One container start for the whole batch, plus the per-case harness limits
+            long waitMs = 5000L + (long) inputs.size() * (timeLimit + execSlackMs);
+            boolean finished = process.waitFor(waitMs, TimeUnit.MILLISECONDS);
+            if (!finished) {
+                System.out.println("DockerService: batch TIMEOUT");
+                destroyTree(process);
+                removeContainer(containerName);
+            }
+            return readBatch("DockerService", batchDir, inputs.size(), stderrLimitBytes, !finished);
+
+        } catch (InterruptedException e) {
+            destroyTree(process);
+            removeContainer(containerName);
+            Thread.currentThread().interrupt();
+            return List.of(RunResult.systemError("run cancelled"));
         } catch (Exception e) {
             System.err.println("DockerService: SYSTEM_ERROR: " + e.getMessage());
             e.printStackTrace();
-            return "SYSTEM_ERROR: " + e.getMessage();
+            destroyTree(process);
+            removeContainer(containerName);
+            return List.of(RunResult.systemError(e.getMessage()));
+        } finally {
+            deleteRecursively(batchDir);
+        }
+    }
+
+    /** Killing the docker client does not stop the container, so remove it explicitly. */
+    private void removeContainer(String name) {
+        try {
+            new ProcessBuilder("docker", "rm", "-f", name)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start()
+                    .waitFor(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.err.println("DockerService: failed to remove container " + name + ": " + e.getMessage());
         }
     }
 }
@@ -4,60 +4,194 @@ import com.example.DAO.SubmissionRepository;
 import com.example.bean.Submission;
 import com.example.bean.Question;
 import com.example.dto.SubmissionTask;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.nio.file.Files;
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 public class EvaluationService {
 
-    @Value("${compiler.testcases.dir}")
-    private String testCasesDir;
+    @Value("${compiler.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${compiler.batch.min-cases:2}")
+    private int batchMinCases;
 
     private final SubmissionRepository submissionRepository;
-    private final DockerService dockerService;
+    private final SandboxRunner sandboxRunner;
+    private final TestCaseExecutor testCaseExecutor;
+    private final TestCaseCache testCaseCache;
+    private final VerdictCache verdictCache;
+    private final QuestionCache questionCache;
+    private final RunOutputCache runOutputCache;
+    private final TestResultWriter testResultWriter;
     private final org.springframework.data.redis.core.StringRedisTemplate redisTemplate;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public EvaluationService(SubmissionRepository submissionRepository,
-            DockerService dockerService,
+            SandboxRunner sandboxRunner,
+            TestCaseExecutor testCaseExecutor,
+            TestCaseCache testCaseCache,
+            VerdictCache verdictCache,
+            QuestionCache questionCache,
+            RunOutputCache runOutputCache,
+            TestResultWriter testResultWriter,
             org.springframework.data.redis.core.StringRedisTemplate redisTemplate) {
         this.submissionRepository = submissionRepository;
-        this.dockerService = dockerService;
+        this.sandboxRunner = sandboxRunner;
+        this.testCaseExecutor = testCaseExecutor;
+        this.testCaseCache = testCaseCache;
+        this.verdictCache = verdictCache;
+        this.questionCache = questionCache;
+        this.runOutputCache = runOutputCache;
+        this.testResultWriter = testResultWriter;
         this.redisTemplate = redisTemplate;
     }
 
     public void evaluate(SubmissionTask task) {
+        evaluate(task, () -> null);
+    }
+
+    /**
+     * Evaluates a task. {@code supersededBy} returns the id of a newer run that
+     * replaced this one, or null; an interactive run that gets superseded is
+     * finished as SUPERSEDED instead of reporting its result.
+     */
+    public void evaluate(SubmissionTask task, Supplier<Long> supersededBy) {
         System.out.println("Starting evaluation for submission: " + task.submissionId());
-        Submission submission = submissionRepository.findById(task.submissionId()).orElseThrow();
+        Submission submission = loadForJudging(task.submissionId()).orElseThrow();
+        if (!isPending(submission)) {
+            // A duplicate delivery (outbox relay or reclaim) of a submission that already has its verdict
+            System.out.println("Submission " + task.submissionId() + " is already " + submission.getStatus()
+                    + "; skipping duplicate delivery");
+            return;
+        }
+        if (task.code() == null) {
+            // Compact tasks carry no source; the submission row is its only copy
+            task = new SubmissionTask(task.submissionId(), task.questionId(), submission.getCode(), task.language(),
+                    task.timeLimit(), task.memoryLimit(), task.jobType(), task.customInput(), task.userId());
+        }
+
+        // Keyed before any test case is read, so a verdict from since-replaced cases lands under the old version
+        String verdictKey = isInteractive(task) ? null : verdictCache.key(task, submission.getQuestion());
+        VerdictCache.Verdict cached = verdictCache.get(verdictKey);
+        if (cached != null) {
+            System.out.println("Reusing cached verdict for submission: " + task.submissionId());
+            submission.setStatus(cached.status());
+            submission.setResultMetadata(cached.resultMetadata());
+            finalizeEvaluation(submission);
+            return;
+        }
+        String runKey = "RUN_CUSTOM".equals(task.jobType()) ? runOutputCache.key(task) : null;
+        String cachedRun = runOutputCache.get(runKey);
+        if (cachedRun != null) {
+            System.out.println("Reusing cached output for submission: " + task.submissionId());
+            submission.setStatus("FINISHED");
+            submission.setResultMetadata(cachedRun);
+            finalizeEvaluation(submission);
+            return;
+        }
+
         submission.setStatus("PROCESSING");
-        submissionRepository.save(submission);
-        finalizeEvaluation(submission); // Broadcast PROCESSING status to client
+        if (!finalizeEvaluation(submission)) { // Broadcast PROCESSING status to client
+            // Another delivery of this task claimed it first, or it reached a final status meanwhile
+            return;
+        }
 
         System.out.println("Status updated to PROCESSING for submission: " + task.submissionId());
 
+        // Compile once; every test case below runs against the same binary
+        CompileResult compiled;
+        try {
+            compiled = sandboxRunner.compile(task.submissionId().toString(), task.code());
+        } catch (Exception e) {
+            if (isInteractive(task) && finishSuperseded(submission, supersededBy)) {
+                return;
+            }
+            submission.setStatus("ERROR");
+            submission.setResultMetadata("{\"error\": \"Compilation could not be started\"}");
+            finalizeEvaluation(submission);
+            return;
+        }
+        if (isInteractive(task) && finishSuperseded(submission, supersededBy)) {
+            return;
+        }
+        if (!compiled.success()) {
+            reportCompilationError(task, submission, compiled);
+            return;
+        }
+
         if ("RUN_CUSTOM".equals(task.jobType())) {
-            evaluateCustom(task, submission);
+            evaluateCustom(task, submission, supersededBy, runKey);
         } else if ("RUN_VISIBLE".equals(task.jobType())) {
-            evaluateVisible(task, submission);
+            evaluateVisible(task, submission, supersededBy);
         } else {
-            evaluateSubmit(task, submission);
+            evaluateSubmit(task, submission, verdictKey);
+        }
+    }
+
+    /**
+     * Marks a submission whose task could not be evaluated (it failed on every
+     * delivery) as ERROR so the student is not left waiting on PROCESSING.
+     */
+    public void abandon(SubmissionTask task, String reason) {
+        loadForJudging(task.submissionId()).ifPresent(submission -> {
+            submission.setStatus("ERROR");
+            try {
+                submission.setResultMetadata(
+                        String.format("{\"error\": %s}", objectMapper.writeValueAsString(reason)));
+            } catch (Exception e) {
+                submission.setResultMetadata("{\"error\": \"JSON conversion error\"}");
+            }
+            finalizeEvaluation(submission);
+        });
+    }
+
+    /** Finishes a queued run that a newer run of the same user and question replaced before it started. */
+    public void supersede(SubmissionTask task, Long newerSubmissionId) {
+        loadForJudging(task.submissionId()).ifPresent(submission -> markSuperseded(submission, newerSubmissionId));
+    }
+
+    private boolean finishSuperseded(Submission submission, Supplier<Long> supersededBy) {
+        Long newer = supersededBy.get();
+        if (newer == null) {
+            return false;
         }
+        // The cancel interrupted the sandbox run; clear it so saving the status is not affected
+        Thread.interrupted();
+        markSuperseded(submission, newer);
+        return true;
     }
 
-    private void evaluateCustom(SubmissionTask task, Submission submission) {
+    private void markSuperseded(Submission submission, Long newerSubmissionId) {
+        System.out.println("Submission " + submission.getId() + " superseded by " + newerSubmissionId);
+        submission.setStatus("SUPERSEDED");
+        submission.setResultMetadata(String.format("{\"supersededBy\": %d}", newerSubmissionId));
+        finalizeEvaluation(submission);
+    }
+
+    private static boolean isInteractive(SubmissionTask task) {
+        return "RUN_CUSTOM".equals(task.jobType()) || "RUN_VISIBLE".equals(task.jobType());
+    }
+
+    private void evaluateCustom(SubmissionTask task, Submission submission, Supplier<Long> supersededBy,
+            String runKey) {
         try {
-            String output = dockerService.runCode(task.submissionId().toString(), task.code(),
-                    task.questionId().toString(), task.customInput(), task.timeLimit());
+            RunResult run = sandboxRunner.runBinary(task.submissionId().toString(), task.customInput(),
+                    task.timeLimit(), null);
             submission.setStatus("FINISHED");
-            submission.setResultMetadata(String.format("{\"output\": %s}", objectMapper.writeValueAsString(output)));
+            submission.setResultMetadata(String.format("{\"output\": %s, %s}",
+                    objectMapper.writeValueAsString(run.displayOutput()), usageJson(run)));
+            runOutputCache.put(runKey, run, submission.getResultMetadata());
         } catch (Exception e) {
             submission.setStatus("ERROR");
             try {
@@ -67,41 +201,39 @@ public class EvaluationService {
                 submission.setResultMetadata("{\"error\": \"JSON conversion error\"}");
             }
         }
+        if (finishSuperseded(submission, supersededBy)) {
+            return;
+        }
         finalizeEvaluation(submission);
     }
 
-    private void evaluateVisible(SubmissionTask task, Submission submission) {
+    private void evaluateVisible(SubmissionTask task, Submission submission, Supplier<Long> supersededBy) {
         Question question = submission.getQuestion();
-        String visibleTestCasesJson = question.getVisibleTestCasesJson();
         StringBuilder metadata = new StringBuilder("[");
         boolean allPassed = true;
 
         try {
-            if (visibleTestCasesJson != null && !visibleTestCasesJson.isEmpty()) {
-                JsonNode testCases = objectMapper.readTree(visibleTestCasesJson);
-                if (testCases.isArray()) {
-                    for (int i = 0; i < testCases.size(); i++) {
-                        JsonNode tc = testCases.get(i);
-                        String input = tc.get("input").asText();
-                        String expected = tc.get("output").asText();
-
-                        String output = dockerService.runCode(task.submissionId().toString(), task.code(),
-                                task.questionId().toString(), input, task.timeLimit());
-
-                        boolean passed = output != null && output.trim().equals(expected.trim());
-                        if (!passed)
-                            allPassed = false;
-
-                        if (i > 0)
-                            metadata.append(",");
-                        metadata.append(String.format(
-                                "{\"testCase\": %d, \"passed\": %b, \"input\": %s, \"expected\": %s, \"actual\": %s}",
-                                i + 1, passed,
-                                objectMapper.writeValueAsString(input),
-                                objectMapper.writeValueAsString(expected),
-                                objectMapper.writeValueAsString(output)));
-                    }
-                }
+            List<TestCaseData> testCases = loadVisibleTestCases(question);
+            List<CaseResult> results = runTestCases(task, question, testCases, testCases.size(), false);
+
+            for (int i = 0; i < results.size(); i++) {
+                String input = testCases.get(i).input();
+                String expected = testCases.get(i).expected();
+                String output = results.get(i).output();
+
+                boolean passed = results.get(i).passed();
+                if (!passed)
+                    allPassed = false;
+
+                if (i > 0)
+                    metadata.append(",");
+                metadata.append(String.format(
+                        "{\"testCase\": %d, \"passed\": %b, \"verdict\": \"%s\", \"input\": %s, \"expected\": %s, \"actual\": %s, %s}",
+                        i + 1, passed, results.get(i).verdict(),
+                        objectMapper.writeValueAsString(input),
+                        objectMapper.writeValueAsString(expected),
+                        objectMapper.writeValueAsString(output),
+                        usageJson(results.get(i).run())));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -109,126 +241,301 @@ public class EvaluationService {
         }
 
         metadata.append("]");
+        if (finishSuperseded(submission, supersededBy)) {
+            return;
+        }
         submission.setStatus(allPassed ? "FINISHED" : "FAILED");
         submission.setResultMetadata(metadata.toString());
         finalizeEvaluation(submission);
     }
 
-    private void evaluateSubmit(SubmissionTask task, Submission submission) {
+    private void evaluateSubmit(SubmissionTask task, Submission submission, String verdictKey) {
         Question question = submission.getQuestion();
-        String visibleTestCasesJson = question.getVisibleTestCasesJson();
         boolean allPassed = true;
-        int testCaseCounter = 0;
+        String verdict = "ACCEPTED";
         int totalTestCases = 0;
 
         // Count total test cases first
+        totalTestCases += countVisibleTestCases(question) + countHiddenTestCases(task.questionId());
+
+        StringBuilder resultsJson = new StringBuilder("[");
+        UsageSummary usage = new UsageSummary();
+        List<TestResultWriter.Row> rows = new ArrayList<>();
+
         try {
-            if (visibleTestCasesJson != null && !visibleTestCasesJson.isEmpty()) {
-                JsonNode testCases = objectMapper.readTree(visibleTestCasesJson);
-                if (testCases.isArray()) {
-                    totalTestCases += testCases.size();
+            // Visible cases first, then hidden ones from the filesystem; judging stops at the first failure
+            List<TestCaseData> visible = loadVisibleTestCases(question);
+            List<TestCaseData> hidden = testCaseCache.hidden(task.questionId());
+            List<TestCaseData> testCases = new ArrayList<>(visible);
+            testCases.addAll(hidden);
+
+            List<CaseResult> results = runTestCases(task, question, testCases, visible.size(), true);
+            for (int i = 0; i < results.size(); i++) {
+                String expected = testCases.get(i).expected();
+                String output = results.get(i).output();
+
+                boolean passed = results.get(i).passed();
+                if (!passed) {
+                    allPassed = false;
+                    verdict = results.get(i).verdict();
+                }
+                RunResult run = results.get(i).run();
+                usage.add(run);
+                rows.add(new TestResultWriter.Row(i + 1, i < visible.size() ? "visible" : "hidden",
+                        results.get(i).verdict(), run.cpuTimeMs(), run.wallTimeMs(), run.peakMemoryKb()));
+
+                if (i > 0)
+                    resultsJson.append(",");
+                if (i < visible.size()) {
+                    resultsJson.append(String.format(
+                            "{\"testCase\": %d, \"passed\": %b, \"verdict\": \"%s\", \"type\": \"visible\", \"expected\": %s, \"actual\": %s, %s}",
+                            i + 1, passed, results.get(i).verdict(),
+                            objectMapper.writeValueAsString(expected),
+                            objectMapper.writeValueAsString(output),
+                            usageJson(results.get(i).run())));
+                } else {
+                    resultsJson.append(String.format(
+                            "{\"testCase\": %d, \"passed\": %b, \"verdict\": \"%s\", \"type\": \"hidden\", %s}",
+                            i + 1, passed, results.get(i).verdict(), usageJson(results.get(i).run())));
                 }
+
+                if (!passed)
+                    break;
             }
         } catch (Exception e) {
             e.printStackTrace();
+            allPassed = false;
+            verdict = "SYSTEM_ERROR";
+        }
+
+        resultsJson.append("]");
+        submission.setStatus(allPassed ? "ACCEPTED" : "WRONG_ANSWER");
+
+        // Wrap results in a container object with total count
+        String finalMetadata = String.format("{\"total\": %d, \"verdict\": \"%s\", %s, \"results\": %s}",
+                totalTestCases, verdict, usage.toJson(), resultsJson.toString());
+        submission.setResultMetadata(finalMetadata);
+        // A system error is not the code's fault, and a time limit verdict can depend on node load
+        if (!"SYSTEM_ERROR".equals(verdict) && !"TIMEOUT".equals(verdict)) {
+            verdictCache.put(verdictKey, task.questionId(), submission.getStatus(), finalMetadata);
+        }
+        // Likewise a system error says nothing about the case, so it would only skew failure rates
+        if (!"SYSTEM_ERROR".equals(verdict)) {
+            try {
+                testResultWriter.write(task.submissionId(), task.questionId(), rows);
+            } catch (Exception e) {
+                System.err.println("Could not record test results for submission " + task.submissionId() + ": "
+                        + e.getMessage());
+            }
+        }
+        finalizeEvaluation(submission);
+    }
+
+    private record CaseResult(RunResult run, String verdict) {
+        boolean passed() {
+            return "PASSED".equals(verdict);
         }
 
-        String hiddenDir = testCasesDir + "/" + task.questionId() + "/hidden";
-        File dir = new File(hiddenDir);
-        if (dir.exists() && dir.isDirectory()) {
-            File[] files = dir.listFiles((d, name) -> name.startsWith("in_") && name.endsWith(".txt"));
-            if (files != null) {
-                totalTestCases += files.length;
+        String output() {
+            return run.displayOutput();
+        }
+    }
+
+    /** Max and total resource usage over the cases a submission actually ran. */
+    private static class UsageSummary {
+        private long maxCpuTimeMs;
+        private long totalCpuTimeMs;
+        private long maxWallTimeMs;
+        private long totalWallTimeMs;
+        private long maxMemoryKb;
+
+        void add(RunResult run) {
+            if (run.cpuTimeMs() != null) {
+                maxCpuTimeMs = Math.max(maxCpuTimeMs, run.cpuTimeMs());
+                totalCpuTimeMs += run.cpuTimeMs();
+            }
+            if (run.wallTimeMs() != null) {
+                maxWallTimeMs = Math.max(maxWallTimeMs, run.wallTimeMs());
+                totalWallTimeMs += run.wallTimeMs();
+            }
+            if (run.peakMemoryKb() != null) {
+                maxMemoryKb = Math.max(maxMemoryKb, run.peakMemoryKb());
             }
         }
 
-        StringBuilder resultsJson = new StringBuilder("[");
+        String toJson() {
+            return String.format(
+                    "\"maxCpuTimeMs\": %d, \"totalCpuTimeMs\": %d, \"maxWallTimeMs\": %d, \"totalWallTimeMs\": %d, \"maxMemoryKb\": %d",
+                    maxCpuTimeMs, totalCpuTimeMs, maxWallTimeMs, totalWallTimeMs, maxMemoryKb);
+        }
+    }
+
+    private static String usageJson(RunResult run) {
+        return String.format("\"cpuTimeMs\": %s, \"wallTimeMs\": %s, \"memoryKb\": %s",
+                run.cpuTimeMs(), run.wallTimeMs(), run.peakMemoryKb());
+    }
+
+    /**
+     * Runs the cases of a submission, either in one sandbox session (batch mode,
+     * compared in bulk afterwards) or one sandbox run per case. Cases from
+     * {@code hiddenFrom} on are hidden. With {@code stopOnFirstFailure} the
+     * result is the prefix up to the first failing case in both modes.
+     */
+    private List<CaseResult> runTestCases(SubmissionTask task, Question question, List<TestCaseData> testCases,
+            int hiddenFrom, boolean stopOnFirstFailure) throws InterruptedException {
+        boolean batch = batchEnabled && !isParallel(question) && testCases.size() >= batchMinCases;
+        if (!batch) {
+            return testCaseExecutor.execute(testCases.size(), isParallel(question), stopOnFirstFailure,
+                    i -> runTestCase(task, testCases.get(i), i >= hiddenFrom),
+                    result -> !result.passed());
+        }
+
+        List<String> inputs = testCases.stream().map(TestCaseData::input).toList();
+        List<RunResult> runs = testCaseExecutor.executeBatch(() -> sandboxRunner.runBatch(
+                task.submissionId().toString(), inputs, task.timeLimit(), stopOnFirstFailure));
+
+        List<CaseResult> results = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i++) {
+            RunResult run = runs.get(i);
+            StreamingComparator comparator = new StreamingComparator(testCases.get(i).expected(), false);
+            byte[] output = run.output() != null ? run.output().getBytes(StandardCharsets.UTF_8) : new byte[0];
+            comparator.feed(output, 0, output.length);
+            CaseResult result = new CaseResult(run, verdictOf(run, comparator));
+            results.add(result);
+            if (stopOnFirstFailure && !result.passed()) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs one case with its output streamed through a comparator. Hidden cases
+     * never show their output, so they are killed on the first mismatching byte.
+     */
+    private CaseResult runTestCase(SubmissionTask task, TestCaseData testCase, boolean abortOnMismatch) {
+        StreamingComparator comparator = new StreamingComparator(testCase.expected(), abortOnMismatch);
+        RunResult run = sandboxRunner.runBinary(task.submissionId().toString(), testCase.input(),
+                task.timeLimit(), comparator);
+        return new CaseResult(run, verdictOf(run, comparator));
+    }
+
+    private String verdictOf(RunResult run, StreamingComparator comparator) {
+        switch (run.status()) {
+            case "OK":
+                return comparator.matches() ? "PASSED" : "WRONG_ANSWER";
+            case "OUTPUT_MISMATCH":
+                return "WRONG_ANSWER";
+            default:
+                return run.status();
+        }
+    }
+
+    private boolean isParallel(Question question) {
+        return Boolean.TRUE.equals(question.getParallelTests());
+    }
 
-        // 1. Visible Test Cases
+    private List<TestCaseData> loadVisibleTestCases(Question question) throws IOException {
+        return questionCache.visibleTestCases(question.getId());
+    }
+
+    private void reportCompilationError(SubmissionTask task, Submission submission, CompileResult compiled) {
+        submission.setStatus("COMPILATION_ERROR");
         try {
-            if (visibleTestCasesJson != null && !visibleTestCasesJson.isEmpty()) {
-                JsonNode testCases = objectMapper.readTree(visibleTestCasesJson);
-                if (testCases.isArray()) {
-                    for (int i = 0; i < testCases.size(); i++) {
-                        testCaseCounter++;
-                        JsonNode tc = testCases.get(i);
-                        String input = tc.get("input").asText();
-                        String expected = tc.get("output").asText();
-
-                        String output = dockerService.runCode(task.submissionId().toString(), task.code(),
-                                task.questionId().toString(), input, task.timeLimit());
-
-                        boolean passed = output != null && output.trim().equals(expected.trim());
-                        if (!passed)
-                            allPassed = false;
-
-                        if (testCaseCounter > 1)
-                            resultsJson.append(",");
-                        resultsJson.append(String.format(
-                                "{\"testCase\": %d, \"passed\": %b, \"type\": \"visible\", \"expected\": %s, \"actual\": %s}",
-                                testCaseCounter, passed,
-                                objectMapper.writeValueAsString(expected),
-                                objectMapper.writeValueAsString(output)));
-
-                        if (!passed)
-                            break;
-                    }
+            String compileOutput = objectMapper.writeValueAsString(compiled.output());
+            if ("RUN_CUSTOM".equals(task.jobType())) {
+                submission.setResultMetadata(String.format("{\"error\": %s}", compileOutput));
+            } else if ("RUN_VISIBLE".equals(task.jobType())) {
+                // Keep the per-test-case array shape the client renders for visible runs
+                StringBuilder metadata = new StringBuilder("[");
+                int visibleCount = countVisibleTestCases(submission.getQuestion());
+                for (int i = 0; i < visibleCount; i++) {
+                    if (i > 0)
+                        metadata.append(",");
+                    metadata.append(String.format(
+                            "{\"testCase\": %d, \"passed\": false, \"verdict\": \"COMPILATION_ERROR\", \"actual\": %s}",
+                            i + 1, compileOutput));
                 }
+                metadata.append("]");
+                submission.setResultMetadata(metadata.toString());
+            } else {
+                submission.setResultMetadata(String.format(
+                        "{\"total\": %d, \"verdict\": \"COMPILATION_ERROR\", \"compileOutput\": %s, \"results\": []}",
+                        countVisibleTestCases(submission.getQuestion()) + countHiddenTestCases(task.questionId()),
+                        compileOutput));
             }
         } catch (Exception e) {
+            submission.setResultMetadata("{\"error\": \"JSON conversion error\"}");
+        }
+        finalizeEvaluation(submission);
+    }
+
+    private int countVisibleTestCases(Question question) {
+        try {
+            return questionCache.visibleTestCases(question.getId()).size();
+        } catch (IOException e) {
             e.printStackTrace();
-            allPassed = false;
+            return 0;
         }
+    }
 
-        // 2. Hidden Test Cases (from filesystem)
-        if (allPassed) {
-            if (dir.exists() && dir.isDirectory()) {
-                File[] files = dir.listFiles((d, name) -> name.startsWith("in_") && name.endsWith(".txt"));
-                if (files != null) {
-                    Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
-                    for (File inFile : files) {
-                        try {
-                            String input = Files.readString(inFile.toPath());
-                            String outFileName = inFile.getName().replace("in_", "out_");
-                            String expected = Files.readString(new File(hiddenDir, outFileName).toPath());
-
-                            String output = dockerService.runCode(task.submissionId().toString(), task.code(),
-                                    task.questionId().toString(), input, task.timeLimit());
-
-                            boolean passed = output != null && output.trim().equals(expected.trim());
-                            if (!passed)
-                                allPassed = false;
-
-                            testCaseCounter++; // Only increment if we actually ran it or to keep index consistent
-                            if (testCaseCounter > 1)
-                                resultsJson.append(",");
-                            resultsJson.append(String.format("{\"testCase\": %d, \"passed\": %b, \"type\": \"hidden\"}",
-                                    testCaseCounter, passed));
-
-                            if (!passed)
-                                break;
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            allPassed = false;
-                            break;
-                        }
-                    }
-                }
-            }
+    private int countHiddenTestCases(Long questionId) {
+        try {
+            return testCaseCache.hidden(questionId).size();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
         }
+    }
 
-        resultsJson.append("]");
-        submission.setStatus(allPassed ? "ACCEPTED" : "WRONG_ANSWER");
+    /**
+     * Loads only what judging needs into a detached {@link Submission}: no
+     * user, and a question holding just its id, visible cases and parallel
+     * flag, taken from the {@link QuestionCache}. It is never saved; updates
+     * go through {@link #finalizeEvaluation}.
+     */
+    private Optional<Submission> loadForJudging(Long submissionId) {
+        return submissionRepository.findForJudging(submissionId).flatMap(row -> {
+            QuestionCache.CachedQuestion cached = questionCache.get(row.getQuestionId());
+            if (cached == null) {
+                return Optional.empty();
+            }
+            Question question = new Question();
+            question.setId(cached.id());
+            question.setVisibleTestCasesJson(cached.visibleTestCasesJson());
+            question.setParallelTests(cached.parallelTests());
+
+            Submission submission = new Submission();
+            submission.setId(row.getId());
+            submission.setQuestion(question);
+            submission.setCode(row.getCode());
+            submission.setType(row.getType());
+            submission.setStatus(row.getStatus());
+            submission.setCreatedAt(row.getCreatedAt());
+            submission.setVersion(row.getVersion() != null ? row.getVersion() : 0L);
+            return Optional.of(submission);
+        });
+    }
 
-        // Wrap results in a container object with total count
-        String finalMetadata = String.format("{\"total\": %d, \"results\": %s}", totalTestCases,
-                resultsJson.toString());
-        submission.setResultMetadata(finalMetadata);
-        finalizeEvaluation(submission);
+    /** QUEUED or PROCESSING; anything else is a final status the judge must not touch again. */
+    private static boolean isPending(Submission submission) {
+        return "QUEUED".equals(submission.getStatus()) || "PROCESSING".equals(submission.getStatus());
     }
 
-    private void finalizeEvaluation(Submission submission) {
-        submissionRepository.save(submission);
+    /**
+     * Writes the submission's status and result metadata, checked against the
+     * version it was read at, and broadcasts the update. Returns false without
+     * broadcasting when the row was changed by someone else in between.
+     */
+    private boolean finalizeEvaluation(Submission submission) {
+        int updated = submissionRepository.updateResult(submission.getId(), submission.getVersion(),
+                submission.getStatus(), submission.getResultMetadata());
+        if (updated == 0) {
+            System.err.println("Submission " + submission.getId() + " changed since version "
+                    + submission.getVersion() + "; not writing " + submission.getStatus());
+            return false;
+        }
+        submission.setVersion(submission.getVersion() + 1);
         try {
             Map<String, Object> update = new HashMap<>();
             update.put("id", submission.getId());
@@ -243,5 +550,6 @@ public class EvaluationService {
         } catch (Exception e) {
             e.printStackTrace();
         }
+        return true;
     }
 }
@@ -0,0 +1,72 @@
+package com.example.compiler;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Per-user round-robin in front of each lane stream. The API enqueues a task
+ * as {@code <enqueuedAtMillis>|<taskJson>} on {@code <stream>:user:<userId>}
+ * and, if that user had nothing waiting, appends the user to the
+ * {@code <stream>:users} rotation. When a worker finds the stream empty,
+ * {@link #promote} atomically moves the oldest task
+ * of the user at the head of the rotation into the stream and rotates that
+ * user to the back. A burst from one user is therefore interleaved with
+ * everyone else's work instead of queueing ahead of it, and no worker ever
+ * idles while any user has work waiting.
+ */
+@Component
+public class FairShareScheduler {
+
+    // KEYS: rotation list, active-user set, lane stream, waiting-task count; ARGV: per-user queue key prefix
+    private static final DefaultRedisScript<String> PROMOTE = new DefaultRedisScript<>("""
+            local user = redis.call('LPOP', KEYS[1])
+            if not user then
+                return false
+            end
+            local queue = ARGV[1] .. user
+            local task = redis.call('LPOP', queue)
+            if redis.call('LLEN', queue) > 0 then
+                redis.call('RPUSH', KEYS[1], user)
+            else
+                redis.call('SREM', KEYS[2], user)
+            end
+            if not task then
+                return false
+            end
+            if tonumber(redis.call('GET', KEYS[4]) or '0') > 0 then
+                redis.call('DECR', KEYS[4])
+            end
+            local sep = string.find(task, '|', 1, true)
+            return redis.call('XADD', KEYS[3], '*', 'task', string.sub(task, sep + 1),
+                'enqueuedAt', string.sub(task, 1, sep - 1))
+            """, String.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public FairShareScheduler(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /** Moves the next task in round-robin order into {@code stream}; false if no user has work waiting. */
+    public boolean promote(String stream) {
+        String id = redisTemplate.execute(PROMOTE,
+                List.of(stream + ":users", stream + ":active", stream, stream + ":depth"),
+                stream + ":user:");
+        return id != null;
+    }
+
+    /** Number of users that currently have tasks waiting in front of {@code stream}. */
+    public long waitingUsers(String stream) {
+        Long count = redisTemplate.opsForSet().size(stream + ":active");
+        return count != null ? count : 0;
+    }
+
+    /** Number of tasks waiting in the per-user queues in front of {@code stream}. */
+    public long waitingTasks(String stream) {
+        String count = redisTemplate.opsForValue().get(stream + ":depth");
+        return count != null ? Long.parseLong(count) : 0;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.compiler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.compiler.SandboxProcesses.*;
+
+/**
+ * Local-process sandbox backend for Linux hosts. Compiles with the host
+ * {@code g++} and runs the binary directly under the harness, which applies
+ * CPU, address-space and file-size rlimits and kills the program's whole
+ * process group on timeout. Each run gets a fresh working directory.
+ *
+ * <p>This offers no isolation from the host beyond rlimits, so it is only for
+ * trusted workloads such as rejudging reference solutions and load tests.
+ * Setting {@code compiler.sandbox.local.run-as} to {@code uid:gid} (the
+ * service must then run as root) runs programs as that user, and the harness
+ * kills every process of that user after each run.
+ */
+@Service
+@ConditionalOnProperty(name = "compiler.sandbox.backend", havingValue = "local")
+public class LocalProcessSandbox implements SandboxRunner {
+
+    private static final String SOURCE_FILE = "solution.cpp";
+    private static final String BINARY_FILE = "out";
+    private static final String LANGUAGE = "cpp";
+
+    @Value("${compiler.workdir}")
+    private String workDirBase;
+
+    @Value("${compiler.compile.timeout-ms:30000}")
+    private long compileTimeoutMs;
+
+    @Value("${compiler.compile.flags:}")
+    private String compileFlags;
+
+    @Value("${compiler.sandbox.local.compiler:g++}")
+    private String compilerCommand;
+
+    @Value("${compiler.sandbox.local.address-space-mb:512}")
+    private long addressSpaceMb;
+
+    @Value("${compiler.sandbox.local.file-size-mb:16}")
+    private long fileSizeMb;
+
+    @Value("${compiler.sandbox.local.run-as:}")
+    private String runAs;
+
+    @Value("${compiler.sandbox.local.slack-ms:500}")
+    private long slackMs;
+
+    @Value("${compiler.output.limit-bytes:8388608}")
+    private long outputLimitBytes;
+
+    @Value("${compiler.output.stderr-limit-bytes:65536}")
+    private int stderrLimitBytes;
+
+    private final BinaryCache binaryCache;
+    private final SandboxHarness sandboxHarness;
+
+    public LocalProcessSandbox(BinaryCache binaryCache, SandboxHarness sandboxHarness) {
+        this.binaryCache = binaryCache;
+        this.sandboxHarness = sandboxHarness;
+    }
+
+    @Override
+    public CompileResult compile(String submissionId, String code) {
+        System.out.println("LocalProcessSandbox: compiling submission " + submissionId);
+        try {
+            Path workDir = Paths.get(workDirBase, submissionId).toAbsolutePath();
+            Files.createDirectories(workDir);
+            Files.deleteIfExists(workDir.resolve(BINARY_FILE));
+            Files.writeString(workDir.resolve(SOURCE_FILE), code);
+
+            String cacheKey = BinaryCache.key(LANGUAGE, "local:" + compilerCommand, compileFlags, code);
+            if (binaryCache.copyTo(cacheKey, workDir.resolve(BINARY_FILE))) {
+                System.out.println("LocalProcessSandbox: binary cache hit for submission " + submissionId);
+                return CompileResult.ok("");
+            }
+
+            List<String> command = new ArrayList<>(List.of(compilerCommand));
+            if (!compileFlags.isBlank()) {
+                command.addAll(List.of(compileFlags.trim().split("\\s+")));
+            }
+            command.addAll(List.of(SOURCE_FILE, "-o", BINARY_FILE));
+
+            CompileResult result = runCompiler("LocalProcessSandbox", command, workDir, workDir.resolve(BINARY_FILE),
+                    compileTimeoutMs);
+            if (result.success()) {
+                binaryCache.store(cacheKey, workDir.resolve(BINARY_FILE));
+            }
+            return result;
+
+        } catch (Exception e) {
+            System.err.println("LocalProcessSandbox: SYSTEM_ERROR during compile: " + e.getMessage());
+            e.printStackTrace();
+            throw new IllegalStateException("Compilation could not be started: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public RunResult runBinary(String submissionId, String input, int timeLimit, StreamingComparator comparator) {
+        OutputCollector collector = new OutputCollector(outputLimitBytes, comparator);
+        Process process = null;
+        Path runDir = null;
+        try {
+            Path workDir = Paths.get(workDirBase, submissionId).toAbsolutePath();
+            Path harness = sandboxHarness.ensureBuilt().resolve("run");
+            runDir = Files.createTempDirectory(workDir, "run-");
+
+            List<String> command = new ArrayList<>(List.of(harness.toString(),
+                    "-m", String.valueOf(addressSpaceMb * 1024),
+                    "-f", String.valueOf(fileSizeMb * 1024)));
+            addRunAs(command);
+            command.addAll(List.of(String.valueOf(timeLimit), workDir.resolve(BINARY_FILE).toString()));
+
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.directory(runDir.toFile());
+            long started = System.nanoTime();
+            process = pb.start();
+
+            return awaitRun("LocalProcessSandbox", process, input, timeLimit + slackMs, collector,
+                    stderrLimitBytes, started);
+
+        } catch (InterruptedException e) {
+            destroyTree(process);
+            Thread.currentThread().interrupt();
+            return RunResult.systemError("run cancelled");
+        } catch (Exception e) {
+            System.err.println("LocalProcessSandbox: SYSTEM_ERROR: " + e.getMessage());
+            e.printStackTrace();
+            destroyTree(process);
+            return RunResult.systemError(e.getMessage());
+        } finally {
+            deleteRecursively(runDir);
+        }
+    }
+
+    @Override
+    public List<RunResult> runBatch(String submissionId, List<String> inputs, int timeLimit, boolean stopOnFailure) {
+        Process process = null;
+        Path batchDir = null;
+        try {
+            Path workDir = Paths.get(workDirBase, submissionId).toAbsolutePath();
+            Path harness = sandboxHarness.ensureBuilt().resolve("run");
+            batchDir = prepareBatch(workDir, inputs);
+
+            List<String> command = new ArrayList<>(List.of(harness.toString(),
+                    "-m", String.valueOf(addressSpaceMb * 1024),
+                    "-f", String.valueOf(Math.max(1, outputLimitBytes / 1024)),
+                    "-b", batchDir.toString()));
+            addRunAs(command);
+            if (stopOnFailure) {
+                command.add("-s");
+            }
+            command.addAll(List.of(String.valueOf(timeLimit), workDir.resolve(BINARY_FILE).toString()));
+
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.directory(batchDir.toFile());
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            process = pb.start();
+
+            long waitMs = (long) inputs.size() * (timeLimit + slackMs);
+            boolean finished = process.waitFor(waitMs, TimeUnit.MILLISECONDS);
+            if (!finished) {
+                System.out.println("LocalProcessSandbox: batch TIMEOUT");
+                destroyTree(process);
+            }
+            return readBatch("LocalProcessSandbox", batchDir, inputs.size(), stderrLimitBytes, !finished);
+
+        } catch (InterruptedException e) {
+            destroyTree(process);
+            Thread.currentThread().interrupt();
+            return List.of(RunResult.systemError("run cancelled"));
+        } catch (Exception e) {
+            System.err.println("LocalProcessSandbox: SYSTEM_ERROR: " + e.getMessage());
+            e.printStackTrace();
+            destroyTree(process);
+            return List.of(RunResult.systemError(e.getMessage()));
+        } finally {
+            deleteRecursively(batchDir);
+        }
+    }
+
+    private void addRunAs(List<String> command) {
+        if (!runAs.isBlank()) {
+            command.addAll(List.of("-u", runAs.trim()));
+        }
+    }
+}
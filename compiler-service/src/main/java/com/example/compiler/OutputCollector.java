@@ -0,0 +1,69 @@
+package com.example.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Drains a sandboxed program's stdout while it runs. The process is killed as
+ * soon as the output exceeds {@code limitBytes}, or, when the comparator asks
+ * for it, on the first byte that cannot match the expected output. Output is
+ * only kept in memory when it has to be shown back to the user.
+ */
+class OutputCollector {
+
+    private final long limitBytes;
+    private final StreamingComparator comparator;
+    private final ByteArrayOutputStream retained;
+    private volatile boolean limitExceeded;
+    private volatile boolean mismatchAborted;
+
+    OutputCollector(long limitBytes, StreamingComparator comparator) {
+        this.limitBytes = limitBytes;
+        this.comparator = comparator;
+        this.retained = comparator != null && comparator.isAbortOnMismatch() ? null : new ByteArrayOutputStream();
+    }
+
+    Future<?> start(Process process, ExecutorService io) {
+        return io.submit(() -> {
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            try (InputStream stdout = process.getInputStream()) {
+                int n;
+                while ((n = stdout.read(buffer)) != -1) {
+                    total += n;
+                    if (total > limitBytes) {
+                        limitExceeded = true;
+                        process.destroyForcibly();
+                        return;
+                    }
+                    if (comparator != null && !comparator.feed(buffer, 0, n) && comparator.isAbortOnMismatch()) {
+                        mismatchAborted = true;
+                        process.destroyForcibly();
+                        return;
+                    }
+                    if (retained != null) {
+                        retained.write(buffer, 0, n);
+                    }
+                }
+            } catch (IOException e) {
+                // Stream closed because the process was killed
+            }
+        });
+    }
+
+    boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    boolean isMismatchAborted() {
+        return mismatchAborted;
+    }
+
+    String output() {
+        return retained != null ? retained.toString(StandardCharsets.UTF_8) : "";
+    }
+}
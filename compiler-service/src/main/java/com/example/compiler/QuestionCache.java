@@ -0,0 +1,187 @@
+package com.example.compiler;
+
+import com.example.DAO.QuestionRepository;
+import com.example.bean.Question;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The judging-relevant fields of each question with its visible test cases
+ * already parsed, so evaluations neither load the question nor re-parse
+ * {@code visibleTestCasesJson} on every run. The API publishes the question id
+ * on {@code question_updates} whenever an admin changes a question, which
+ * drops the entry on every worker. Entries also expire after
+ * {@code compiler.question-cache.ttl-ms} in case a message is missed, and are
+ * evicted in LRU order beyond {@code compiler.question-cache.max-entries}.
+ */
+@Component
+public class QuestionCache {
+
+    private static final String QUESTION_UPDATES_CHANNEL = "question_updates";
+
+    @Value("${compiler.question-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${compiler.question-cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${compiler.question-cache.ttl-ms:600000}")
+    private long ttlMs;
+
+    /** Visible test cases are null when the stored JSON could not be parsed. */
+    public record CachedQuestion(Long id, String visibleTestCasesJson, Boolean parallelTests,
+            List<TestCaseData> visibleTestCases) {
+    }
+
+    private record Entry(CachedQuestion question, long expiresAt) {
+    }
+
+    private final QuestionRepository questionRepository;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Access-ordered so iteration starts at the least recently used question
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Bumped by every invalidation so a load that raced with one is not cached
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public QuestionCache(QuestionRepository questionRepository, RedisMessageListenerContainer listenerContainer) {
+        this.questionRepository = questionRepository;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener((message, pattern) -> onQuestionChanged(message.getBody()),
+                new ChannelTopic(QUESTION_UPDATES_CHANNEL));
+    }
+
+    /** The question, or null if it does not exist. */
+    public CachedQuestion get(Long questionId) {
+        if (!enabled) {
+            return load(questionId);
+        }
+        long startedGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(questionId);
+            if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.question();
+            }
+            if (entry != null) {
+                entries.remove(questionId);
+            }
+            startedGeneration = generation;
+        }
+        misses.incrementAndGet();
+        CachedQuestion loaded = load(questionId);
+        if (loaded == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (generation == startedGeneration) {
+                entries.put(questionId, new Entry(loaded, System.currentTimeMillis() + ttlMs));
+                Iterator<Entry> it = entries.values().iterator();
+                while (entries.size() > maxEntries && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /** Parsed visible test cases of a question; empty if it has none or does not exist. */
+    public List<TestCaseData> visibleTestCases(Long questionId) throws IOException {
+        CachedQuestion question = get(questionId);
+        if (question == null) {
+            return List.of();
+        }
+        if (question.visibleTestCases() == null) {
+            throw new IOException("Malformed visible test cases for question " + questionId);
+        }
+        return question.visibleTestCases();
+    }
+
+    public synchronized void invalidate(Long questionId) {
+        generation++;
+        if (entries.remove(questionId) != null) {
+            invalidations.incrementAndGet();
+            System.out.println("QuestionCache: invalidated question " + questionId);
+        }
+    }
+
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        metrics.put("enabled", enabled);
+        metrics.put("questions", entries.size());
+        metrics.put("maxEntries", maxEntries);
+        metrics.put("hits", h);
+        metrics.put("misses", m);
+        metrics.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        metrics.put("evictions", evictions.get());
+        metrics.put("invalidations", invalidations.get());
+        return metrics;
+    }
+
+    private void onQuestionChanged(byte[] body) {
+        try {
+            invalidate(Long.parseLong(new String(body, StandardCharsets.UTF_8).trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("QuestionCache: ignoring malformed update: " + e.getMessage());
+        }
+    }
+
+    private CachedQuestion load(Long questionId) {
+        Question question = questionRepository.findById(questionId).orElse(null);
+        if (question == null) {
+            return null;
+        }
+        return new CachedQuestion(question.getId(), question.getVisibleTestCasesJson(), question.getParallelTests(),
+                parseVisibleTestCases(question));
+    }
+
+    private List<TestCaseData> parseVisibleTestCases(Question question) {
+        List<TestCaseData> testCases = new ArrayList<>();
+        String visibleTestCasesJson = question.getVisibleTestCasesJson();
+        if (visibleTestCasesJson == null || visibleTestCasesJson.isEmpty()) {
+            return List.of();
+        }
+        try {
+            JsonNode nodes = objectMapper.readTree(visibleTestCasesJson);
+            if (nodes.isArray()) {
+                for (JsonNode tc : nodes) {
+                    testCases.add(new TestCaseData(tc.get("input").asText(), tc.get("output").asText()));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("QuestionCache: cannot parse visible test cases of question " + question.getId()
+                    + ": " + e.getMessage());
+            return null;
+        }
+        return Collections.unmodifiableList(testCases);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.compiler;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Time tasks of one queue lane spent waiting between being enqueued and being
+ * picked up by a worker: totals since start plus percentiles over the most
+ * recent {@value #WINDOW} tasks. Also tracks the size of their queue
+ * payloads by format, to compare full and compact tasks.
+ */
+class QueueWaitStats {
+
+    private static final int WINDOW = 512;
+
+    private final long[] recent = new long[WINDOW];
+    private int recentCount;
+    private int next;
+    private long dispatched;
+    private long totalWaitMs;
+    private long maxWaitMs;
+    private long payloadBytes;
+    private long compactTasks;
+    private long fullTasks;
+
+    synchronized void record(long waitMs) {
+        waitMs = Math.max(0, waitMs);
+        recent[next] = waitMs;
+        next = (next + 1) % WINDOW;
+        recentCount = Math.min(recentCount + 1, WINDOW);
+        dispatched++;
+        totalWaitMs += waitMs;
+        maxWaitMs = Math.max(maxWaitMs, waitMs);
+    }
+
+    synchronized void recordPayload(int bytes, boolean compact) {
+        payloadBytes += bytes;
+        if (compact) {
+            compactTasks++;
+        } else {
+            fullTasks++;
+        }
+    }
+
+    synchronized Map<String, Object> snapshot() {
+        long[] sorted = Arrays.copyOf(recent, recentCount);
+        Arrays.sort(sorted);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dispatched", dispatched);
+        stats.put("avgWaitMs", dispatched == 0 ? 0 : totalWaitMs / dispatched);
+        stats.put("maxWaitMs", maxWaitMs);
+        stats.put("p50WaitMs", percentile(sorted, 0.50));
+        stats.put("p95WaitMs", percentile(sorted, 0.95));
+        long payloads = compactTasks + fullTasks;
+        stats.put("avgPayloadBytes", payloads == 0 ? 0 : payloadBytes / payloads);
+        stats.put("compactTasks", compactTasks);
+        stats.put("fullTasks", fullTasks);
+        return stats;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.compiler;
+
+import com.example.dto.SubmissionTask;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived results of custom-input runs, keyed by a hash of the code,
+ * input, language and limits, so re-running an unchanged program on the same
+ * input is answered without a sandbox. Entries expire after
+ * {@code compiler.run-cache.ttl-ms} and are evicted in LRU order beyond
+ * {@code compiler.run-cache.max-bytes}.
+ */
+@Component
+public class RunOutputCache {
+
+    @Value("${compiler.run-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${compiler.run-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${compiler.run-cache.ttl-ms:600000}")
+    private long ttlMs;
+
+    private record Entry(String resultMetadata, long bytes, long expiresAt) {
+    }
+
+    // Access-ordered so iteration starts at the least recently used result
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Cache key of a custom run, or null when caching is disabled. */
+    public String key(SubmissionTask task) {
+        if (!enabled) {
+            return null;
+        }
+        return BinaryCache.key(task.language(), String.valueOf(task.timeLimit()),
+                String.valueOf(task.memoryLimit()), task.code(), task.customInput());
+    }
+
+    /** Result metadata of an earlier identical run, or null. */
+    public String get(String key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.resultMetadata();
+            }
+            if (entry != null) {
+                remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Stores the result of a run; TIMEOUT and SYSTEM_ERROR runs are never cached. */
+    public void put(String key, RunResult run, String resultMetadata) {
+        if (key == null || "TIMEOUT".equals(run.status()) || "SYSTEM_ERROR".equals(run.status())) {
+            return;
+        }
+        // Strings are UTF-16 on the heap in the worst case
+        long bytes = 2L * (key.length() + resultMetadata.length());
+        if (bytes > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            remove(key);
+            entries.put(key, new Entry(resultMetadata, bytes, System.currentTimeMillis() + ttlMs));
+            totalBytes += bytes;
+            Iterator<Entry> it = entries.values().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                totalBytes -= it.next().bytes();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        stores.incrementAndGet();
+    }
+
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        metrics.put("enabled", enabled);
+        metrics.put("entries", entries.size());
+        metrics.put("bytes", totalBytes);
+        metrics.put("maxBytes", maxBytes);
+        metrics.put("hits", h);
+        metrics.put("misses", m);
+        metrics.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        metrics.put("stores", stores.get());
+        metrics.put("evictions", evictions.get());
+        return metrics;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.bytes();
+        }
+    }
+}
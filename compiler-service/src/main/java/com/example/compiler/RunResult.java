@@ -0,0 +1,44 @@
+package com.example.compiler;
+
+/**
+ * Outcome of running a compiled binary on one input.
+ *
+ * <p>{@code status} is one of {@code OK}, {@code TIMEOUT}, {@code RUNTIME_ERROR},
+ * {@code OUTPUT_LIMIT_EXCEEDED}, {@code OUTPUT_MISMATCH} (killed early by a
+ * comparator) or {@code SYSTEM_ERROR}. Resource figures come from the sandbox
+ * harness and are null when the run was cut off before it could report.
+ */
+public record RunResult(
+        String status,
+        String output,
+        String error,
+        Long cpuTimeMs,
+        Long wallTimeMs,
+        Long peakMemoryKb) {
+
+    public static RunResult systemError(String message) {
+        return new RunResult("SYSTEM_ERROR", "", message, null, null, null);
+    }
+
+    public boolean isOk() {
+        return "OK".equals(status);
+    }
+
+    /**
+     * The text shown to students as the program's output; failures keep the
+     * same wording the judge has always used.
+     */
+    public String displayOutput() {
+        switch (status) {
+            case "OK":
+            case "OUTPUT_MISMATCH":
+                return output;
+            case "RUNTIME_ERROR":
+                return "RUNTIME_ERROR\n" + (error != null ? error : "");
+            case "SYSTEM_ERROR":
+                return "SYSTEM_ERROR: " + error;
+            default:
+                return status;
+        }
+    }
+}
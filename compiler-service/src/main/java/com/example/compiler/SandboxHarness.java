@@ -0,0 +1,116 @@
+package com.example.compiler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds and describes the small C harness ({@code sandbox/harness.c}) that
+ * every sandboxed run goes through. The harness enforces the time limit and
+ * reports CPU time, wall time and peak RSS from {@code wait4} as the last line
+ * of stderr, which {@link #parse} strips off again.
+ */
+@Component
+public class SandboxHarness {
+
+    public static final String CONTAINER_DIR = "/opt/iitj";
+    public static final String CONTAINER_BINARY = CONTAINER_DIR + "/run";
+    private static final String STATS_MARKER = "__IITJ_STATS__";
+
+    @Value("${compiler.sandbox.harness-dir:./cache/harness}")
+    private String harnessDir;
+
+    @Value("${compiler.sandbox.image:gcc:latest}")
+    private String image;
+
+    @Value("${compiler.sandbox.backend:docker}")
+    private String backend;
+
+    private volatile boolean built;
+
+    /** CPU time, wall time and peak memory of one run, as reported by the harness. */
+    public record Stats(long cpuTimeMs, long wallTimeMs, long peakMemoryKb, boolean timedOut) {
+    }
+
+    /** The stats line and the program's own stderr with the stats line removed. */
+    public record Parsed(Stats stats, String stderr) {
+    }
+
+    /**
+     * Compiles the harness inside the sandbox image (so it links against the same
+     * libc as the programs it runs) into the harness directory, once per source
+     * version. The {@code local} backend builds it with the host {@code gcc}.
+     * Returns the absolute host directory to mount at {@link #CONTAINER_DIR}.
+     */
+    public synchronized Path ensureBuilt() throws IOException, InterruptedException {
+        Path dir = Paths.get(harnessDir).toAbsolutePath();
+        if (built) {
+            return dir;
+        }
+        Files.createDirectories(dir);
+        String source;
+        try (InputStream in = getClass().getResourceAsStream("/sandbox/harness.c")) {
+            if (in == null) {
+                throw new IOException("sandbox/harness.c missing from classpath");
+            }
+            source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        Path sourceFile = dir.resolve("harness.c");
+        Path binary = dir.resolve("run");
+        boolean upToDate = Files.exists(binary) && Files.exists(sourceFile)
+                && Files.readString(sourceFile).equals(source);
+        if (!upToDate) {
+            Files.writeString(sourceFile, source);
+            Process process = new ProcessBuilder(buildCommand(dir))
+                    .redirectErrorStream(true)
+                    .start();
+            String output = new String(process.getInputStream().readAllBytes());
+            if (!process.waitFor(120, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                process.destroyForcibly();
+                throw new IOException("Failed to build sandbox harness: " + output);
+            }
+            System.out.println("SandboxHarness: built " + binary);
+        }
+        built = true;
+        return dir;
+    }
+
+    private String[] buildCommand(Path dir) {
+        if ("local".equals(backend)) {
+            return new String[] { "gcc", "-O2", "-o", dir.resolve("run").toString(),
+                    dir.resolve("harness.c").toString() };
+        }
+        return new String[] { "docker", "run", "--rm", "-v", dir + ":/h", image,
+                "gcc", "-O2", "-o", "/h/run", "/h/harness.c" };
+    }
+
+    /**
+     * Splits the harness stats line off the captured stderr. Returns null stats
+     * when the harness did not get to report (e.g. the run was killed from the
+     * host side).
+     */
+    public static Parsed parse(String stderr) {
+        int marker = stderr.lastIndexOf(STATS_MARKER);
+        if (marker < 0) {
+            return new Parsed(null, stderr);
+        }
+        String[] fields = stderr.substring(marker + STATS_MARKER.length()).trim().split("\\s+");
+        // The harness prefixes the stats line with a newline of its own
+        int cut = marker > 0 && stderr.charAt(marker - 1) == '\n' ? marker - 1 : marker;
+        String programStderr = stderr.substring(0, cut);
+        try {
+            Stats stats = new Stats(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                    Long.parseLong(fields[2]), "1".equals(fields[3]));
+            return new Parsed(stats, programStderr);
+        } catch (RuntimeException e) {
+            return new Parsed(null, programStderr);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.compiler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of pre-started, resource-limited sandbox containers. Test cases are
+ * executed with {@code docker exec} into an idle container instead of paying
+ * for a full {@code docker run} per case. Containers are destroyed after
+ * {@code max-uses} runs or after any run that timed out or misbehaved, and idle
+ * containers above {@code min-size} are reaped after {@code idle-timeout-ms}.
+ *
+ * <p>Programs run as the unprivileged {@code run-as} user, never as root. Before
+ * a container is reused it is reset: the binary is removed, every file that
+ * user left in a writable location is deleted, and the container is only put
+ * back if no process or file of that user remains.
+ */
+@Component
+public class SandboxPool {
+
+    /** Root-only file listing the directories the program user can write to. */
+    private static final String WRITABLE_DIRS = "/etc/iitj-writable-dirs";
+
+    @Value("${compiler.sandbox.pool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${compiler.sandbox.pool.min-size:2}")
+    private int minSize;
+
+    @Value("${compiler.sandbox.pool.max-size:8}")
+    private int maxSize;
+
+    @Value("${compiler.sandbox.pool.max-uses:50}")
+    private int maxUses;
+
+    @Value("${compiler.sandbox.pool.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+
+    @Value("${compiler.sandbox.pool.acquire-timeout-ms:10000}")
+    private long acquireTimeoutMs;
+
+    @Value("${compiler.sandbox.pool.run-as:65534:65534}")
+    private String runAs;
+
+    @Value("${compiler.sandbox.image:gcc:latest}")
+    private String image;
+
+    @Value("${compiler.sandbox.backend:docker}")
+    private String backend;
+
+    @Value("${compiler.sandbox.memory:128m}")
+    private String memory;
+
+    @Value("${compiler.sandbox.cpus:0.5}")
+    private String cpus;
+
+    private final BlockingDeque<PooledContainer> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong createFailures = new AtomicLong();
+    private ScheduledExecutorService maintenance;
+
+    private final SandboxHarness sandboxHarness;
+
+    public SandboxPool(SandboxHarness sandboxHarness) {
+        this.sandboxHarness = sandboxHarness;
+    }
+
+    public static final class PooledContainer {
+        private final String id;
+        private int uses;
+        private long lastReleased = System.currentTimeMillis();
+
+        private PooledContainer(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!"docker".equals(backend)) {
+            // Containers are only used by the docker backend
+            enabled = false;
+            System.out.println("SandboxPool: disabled, sandbox backend is " + backend);
+            return;
+        }
+        if (!enabled) {
+            System.out.println("SandboxPool: disabled, runs will use one-shot docker run");
+            return;
+        }
+        if (!runAs.trim().matches("[1-9]\\d*:[1-9]\\d*")) {
+            throw new IllegalStateException("compiler.sandbox.pool.run-as must be a non-root uid:gid, got '"
+                    + runAs + "'");
+        }
+        runAs = runAs.trim();
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SandboxPoolMaintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintain, 0, 5, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        PooledContainer container;
+        while ((container = idle.poll()) != null) {
+            destroy(container);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** The {@code uid:gid} the harness runs pooled programs as. */
+    public String getRunAs() {
+        return runAs;
+    }
+
+    /**
+     * Takes an idle container, starting a new one if the pool has room, or waits
+     * for one to be released when the pool is at {@code max-size}.
+     */
+    public PooledContainer acquire() throws IOException, InterruptedException {
+        PooledContainer container = idle.pollFirst();
+        if (container != null) {
+            hits.incrementAndGet();
+            return container;
+        }
+        misses.incrementAndGet();
+        if (reserveSlot()) {
+            try {
+                return start();
+            } catch (IOException | InterruptedException e) {
+                size.decrementAndGet();
+                throw e;
+            }
+        }
+        container = idle.pollFirst(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        if (container == null) {
+            throw new IOException("No sandbox container available after " + acquireTimeoutMs + " ms");
+        }
+        return container;
+    }
+
+    /**
+     * Returns a container to the pool. Containers that are no longer trusted
+     * (timed out, killed, failed to reset) or that reached {@code max-uses} are
+     * destroyed instead.
+     */
+    public void release(PooledContainer container, boolean reusable) {
+        container.uses++;
+        if (!reusable || container.uses >= maxUses || !reset(container)) {
+            recycled.incrementAndGet();
+            size.decrementAndGet();
+            destroy(container);
+            return;
+        }
+        container.lastReleased = System.currentTimeMillis();
+        // Most recently used first so surplus containers age out at the tail
+        idle.offerFirst(container);
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("size", size.get());
+        metrics.put("idle", idle.size());
+        metrics.put("minSize", minSize);
+        metrics.put("maxSize", maxSize);
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("recycled", recycled.get());
+        metrics.put("created", created.get());
+        metrics.put("createFailures", createFailures.get());
+        return metrics;
+    }
+
+    private boolean reserveSlot() {
+        while (true) {
+            int current = size.get();
+            if (current >= maxSize) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private PooledContainer start() throws IOException, InterruptedException {
+        String harnessDir = sandboxHarness.ensureBuilt().toString();
+        ProcessBuilder pb = new ProcessBuilder("docker", "run", "-d", "--rm",
+                "--network=none",
+                "--memory=" + memory, "--memory-swap=" + memory,
+                "--cpus=" + cpus,
+                "--pids-limit=64",
+                "--init",
+                "--label", "iitj-coder.sandbox=pool",
+                "-v", harnessDir + ":" + SandboxHarness.CONTAINER_DIR + ":ro",
+                // /sandbox is root-owned and read-only to the program; remember which directories it can write to
+                image, "sh", "-c", "mkdir -p /sandbox && chmod 755 /sandbox"
+                        + " && find / /dev/shm -xdev -type d -perm -0002 > " + WRITABLE_DIRS + " 2>/dev/null"
+                        + "; chmod 600 " + WRITABLE_DIRS + " && exec sleep infinity");
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        String output = new String(process.getInputStream().readAllBytes()).trim();
+        if (!process.waitFor(30, TimeUnit.SECONDS) || process.exitValue() != 0 || output.isEmpty()) {
+            process.destroyForcibly();
+            createFailures.incrementAndGet();
+            throw new IOException("Failed to start sandbox container: " + output);
+        }
+        // docker may print pull progress before the id; the id is always the last line
+        String[] lines = output.split("\\R");
+        created.incrementAndGet();
+        System.out.println("SandboxPool: started container " + lines[lines.length - 1]);
+        return new PooledContainer(lines[lines.length - 1]);
+    }
+
+    /**
+     * Cleans a container after a run. The harness already killed every process
+     * of the program user; this deletes the binary and everything that user
+     * created, then fails if any process or file of the user is still there.
+     */
+    private boolean reset(PooledContainer container) {
+        String uid = runAs.substring(0, runAs.indexOf(':'));
+        String script = "rm -f /sandbox/*"
+                + "; for d in $(cat " + WRITABLE_DIRS + "); do find \"$d\" -xdev -mindepth 1 -depth -user " + uid
+                + " -delete; done"
+                + "; for p in /proc/[0-9]*; do [ \"$(stat -c %u \"$p\" 2>/dev/null)\" != " + uid + " ] || exit 1; done"
+                + "; [ -z \"$(ls -A /sandbox)\" ] || exit 1"
+                + "; for d in $(cat " + WRITABLE_DIRS + "); do"
+                + " [ -z \"$(find \"$d\" -xdev -user " + uid + " -print -quit)\" ] || exit 1; done";
+        try {
+            Process process = new ProcessBuilder("docker", "exec", container.id, "sh", "-c", script)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            if (process.exitValue() != 0) {
+                System.out.println("SandboxPool: container " + container.id + " not clean after a run, recycling");
+                return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException e) {
+            System.err.println("SandboxPool: failed to reset container " + container.id + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void destroy(PooledContainer container) {
+        try {
+            Process process = new ProcessBuilder("docker", "rm", "-f", container.id)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            process.waitFor(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.err.println("SandboxPool: failed to remove container " + container.id + ": " + e.getMessage());
+        }
+    }
+
+    private void maintain() {
+        try {
+            // Shrink: reap containers that sat idle too long while above min-size
+            long now = System.currentTimeMillis();
+            List<PooledContainer> expired = new ArrayList<>();
+            for (PooledContainer container : idle) {
+                if (size.get() - expired.size() <= minSize) {
+                    break;
+                }
+                if (now - container.lastReleased > idleTimeoutMs) {
+                    expired.add(container);
+                }
+            }
+            for (PooledContainer container : expired) {
+                if (idle.remove(container)) {
+                    size.decrementAndGet();
+                    destroy(container);
+                }
+            }
+
+            // Grow back to min-size so the next burst starts warm
+            while (size.get() < minSize && reserveSlot()) {
+                try {
+                    idle.offerLast(start());
+                } catch (IOException e) {
+                    size.decrementAndGet();
+                    System.err.println("SandboxPool: " + e.getMessage());
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("SandboxPool: maintenance failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.compiler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Process plumbing shared by the {@link SandboxRunner} backends.
+ *
+ * <p>Stdin feeding and stdout/stderr draining of every sandboxed process run
+ * concurrently on one shared pool of daemon I/O threads, so a program that
+ * writes a lot before it has read all of its input cannot deadlock against us,
+ * and threads are reused across runs instead of being created per stream.
+ */
+final class SandboxProcesses {
+
+    /** Compiler diagnostics beyond this are truncated before being stored. */
+    private static final int COMPILER_LOG_LIMIT = 64 * 1024;
+
+    /** Exit status of a program killed by SIGXFSZ, i.e. it wrote past its file size limit. */
+    private static final int SIGXFSZ_EXIT = 128 + 25;
+
+    private static final AtomicInteger IO_COUNTER = new AtomicInteger();
+    private static final ExecutorService IO = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "SandboxIO-" + IO_COUNTER.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private SandboxProcesses() {
+    }
+
+    /**
+     * Runs a compiler command to completion, capturing its combined output as
+     * the diagnostics. Succeeds only if it exits 0 and produced {@code binary}.
+     */
+    static CompileResult runCompiler(String name, List<String> command, Path directory, Path binary,
+            long timeoutMs) throws IOException, InterruptedException {
+        System.out.println(name + ": executing command: " + String.join(" ", command));
+
+        ProcessBuilder pb = new ProcessBuilder(command);
+        if (directory != null) {
+            pb.directory(directory.toFile());
+        }
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        process.getOutputStream().close();
+
+        // Drain compiler diagnostics while waiting so a noisy compile cannot block
+        BoundedLog compilerLog = new BoundedLog(COMPILER_LOG_LIMIT);
+        Future<?> logTask = drain(process.getInputStream(), compilerLog);
+
+        boolean finished = process.waitFor(timeoutMs, TimeUnit.MILLISECONDS);
+        if (!finished) {
+            System.out.println(name + ": compilation TIMEOUT");
+            destroyTree(process);
+            return CompileResult.failed("Compilation timed out after " + timeoutMs + " ms");
+        }
+        await(logTask);
+
+        if (process.exitValue() != 0 || !Files.exists(binary)) {
+            System.out.println(name + ": compilation failed with exit code " + process.exitValue());
+            return CompileResult.failed(compilerLog.toString());
+        }
+        return CompileResult.ok(compilerLog.toString());
+    }
+
+    /**
+     * Feeds {@code input} to a started harness process while draining its
+     * stdout into {@code collector} and at most {@code stderrLimitBytes} of its
+     * stderr, then waits up to {@code waitMs} for it to exit. A process still
+     * running after that is killed and reported as {@code TIMEOUT}.
+     */
+    static RunResult awaitRun(String name, Process process, String input, long waitMs, OutputCollector collector,
+            int stderrLimitBytes, long started) throws InterruptedException {
+        Future<?> outputTask = collector.start(process, IO);
+        BoundedLog errorLog = new BoundedLog(stderrLimitBytes);
+        Future<?> errorTask = drain(process.getErrorStream(), errorLog);
+        Future<?> inputTask = IO.submit(() -> writeInput(process, input));
+
+        try {
+            boolean finished = process.waitFor(waitMs, TimeUnit.MILLISECONDS);
+            if (!finished) {
+                System.out.println(name + ": process TIMEOUT");
+                destroyTree(process);
+                return new RunResult("TIMEOUT", "", null, null, elapsedMs(started), null);
+            }
+            await(outputTask);
+            await(errorTask);
+            return toRunResult(name, process.exitValue(), collector, errorLog.toString(), started);
+        } finally {
+            inputTask.cancel(true);
+        }
+    }
+
+    /**
+     * Turns a finished harness run into a {@link RunResult}, with the harness
+     * stats line split off stderr.
+     */
+    static RunResult toRunResult(String name, int exitCode, OutputCollector collector, String stderr, long started) {
+        SandboxHarness.Parsed parsed = SandboxHarness.parse(stderr);
+        SandboxHarness.Stats stats = parsed.stats();
+        Long cpuTimeMs = stats != null ? stats.cpuTimeMs() : null;
+        Long wallTimeMs = stats != null ? stats.wallTimeMs() : elapsedMs(started);
+        Long peakMemoryKb = stats != null ? stats.peakMemoryKb() : null;
+
+        if (collector.isLimitExceeded()) {
+            System.out.println(name + ": OUTPUT_LIMIT_EXCEEDED");
+            return new RunResult("OUTPUT_LIMIT_EXCEEDED", "", null, cpuTimeMs, wallTimeMs, peakMemoryKb);
+        }
+        if (collector.isMismatchAborted()) {
+            System.out.println(name + ": output mismatch, run aborted early");
+            return new RunResult("OUTPUT_MISMATCH", collector.output(), null, cpuTimeMs, wallTimeMs, peakMemoryKb);
+        }
+        if (stats != null && stats.timedOut()) {
+            System.out.println(name + ": process TIMEOUT");
+            return new RunResult("TIMEOUT", "", null, cpuTimeMs, wallTimeMs, peakMemoryKb);
+        }
+        if (exitCode != 0) {
+            String error = parsed.stderr();
+            System.out.println(name + ": process failed with exit code " + exitCode + ". Error: " + error);
+            return new RunResult("RUNTIME_ERROR", collector.output(), error, cpuTimeMs, wallTimeMs, peakMemoryKb);
+        }
+
+        String result = collector.output();
+        System.out.println(name + ": execution successful. Result length: " + result.length()
+                + ", cpu " + cpuTimeMs + " ms, wall " + wallTimeMs + " ms, peak " + peakMemoryKb + " KB");
+        return new RunResult("OK", result, parsed.stderr(), cpuTimeMs, wallTimeMs, peakMemoryKb);
+    }
+
+    /**
+     * Creates a fresh batch directory under {@code workDir} holding
+     * {@code 1.in .. n.in} for the harness's batch mode.
+     */
+    static Path prepareBatch(Path workDir, List<String> inputs) throws IOException {
+        Path dir = Files.createTempDirectory(workDir, "batch-");
+        for (int i = 0; i < inputs.size(); i++) {
+            String input = inputs.get(i);
+            Files.writeString(dir.resolve((i + 1) + ".in"), input != null ? input : "");
+        }
+        return dir;
+    }
+
+    /**
+     * Reads back the per-case results of a batch run, in case order. Cases the
+     * harness did not reach because it stopped early are left out, so the list
+     * may be shorter than the number of inputs. If the whole batch was
+     * {@code killed} from the host, the case it was in is reported as a timeout.
+     */
+    static List<RunResult> readBatch(String name, Path dir, int count, int stderrLimitBytes, boolean killed)
+            throws IOException {
+        List<RunResult> results = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Path statFile = dir.resolve(i + ".stat");
+            if (!Files.exists(statFile)) {
+                break;
+            }
+            String[] fields = Files.readString(statFile).trim().split("\\s+");
+            int exitCode = Integer.parseInt(fields[0]);
+            Long cpuTimeMs = Long.parseLong(fields[1]);
+            Long wallTimeMs = Long.parseLong(fields[2]);
+            Long peakMemoryKb = Long.parseLong(fields[3]);
+            boolean timedOut = "1".equals(fields[4]);
+
+            if (timedOut) {
+                results.add(new RunResult("TIMEOUT", "", null, cpuTimeMs, wallTimeMs, peakMemoryKb));
+            } else if (exitCode == SIGXFSZ_EXIT) {
+                // The harness caps each case's output file with RLIMIT_FSIZE
+                results.add(new RunResult("OUTPUT_LIMIT_EXCEEDED", "", null, cpuTimeMs, wallTimeMs, peakMemoryKb));
+            } else {
+                String output = Files.readString(dir.resolve(i + ".out"));
+                String error = readHead(dir.resolve(i + ".err"), stderrLimitBytes);
+                results.add(new RunResult(exitCode == 0 ? "OK" : "RUNTIME_ERROR", output, error,
+                        cpuTimeMs, wallTimeMs, peakMemoryKb));
+            }
+        }
+        if (killed && results.size() < count) {
+            results.add(new RunResult("TIMEOUT", "", null, null, null, null));
+        }
+        System.out.println(name + ": batch finished " + results.size() + " of " + count + " cases");
+        return results;
+    }
+
+    private static String readHead(Path file, int limitBytes) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return new String(in.readNBytes(limitBytes), StandardCharsets.UTF_8);
+        }
+    }
+
+    static void deleteRecursively(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("SandboxProcesses: failed to clean " + dir + ": " + e.getMessage());
+        }
+    }
+
+    static long elapsedMs(long startedNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    }
+
+    private static void writeInput(Process process, String input) {
+        try (OutputStream os = process.getOutputStream()) {
+            if (input != null && !input.isEmpty()) {
+                os.write(input.getBytes());
+                os.flush();
+            }
+        } catch (IOException e) {
+            // The program exited or was killed before reading all of its input
+            System.out.println("SandboxProcesses: stdin closed early: " + e.getMessage());
+        }
+    }
+
+    private static Future<?> drain(InputStream stream, BoundedLog sink) {
+        return IO.submit(() -> {
+            byte[] buffer = new byte[8192];
+            try (InputStream in = stream) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    sink.write(buffer, n);
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading process stream: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Gives a drain task a moment to hit end-of-stream after the process exited. */
+    private static void await(Future<?> task) throws InterruptedException {
+        try {
+            task.get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            task.cancel(true);
+        }
+    }
+
+    /** Kills a process and everything it spawned. */
+    static void destroyTree(Process process) {
+        if (process != null) {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Keeps the first {@code limit} bytes of a stream plus a short tail, and
+     * discards the middle. The tail is kept because the harness writes its
+     * stats line last.
+     */
+    static final class BoundedLog {
+        private static final int TAIL_BYTES = 512;
+
+        private final int limit;
+        private final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        private final byte[] tail = new byte[TAIL_BYTES];
+        private int tailStart;
+        private int tailLength;
+        private boolean truncated;
+
+        BoundedLog(int limit) {
+            this.limit = limit;
+        }
+
+        synchronized void write(byte[] buffer, int length) {
+            int offset = 0;
+            if (head.size() < limit) {
+                int taken = Math.min(length, limit - head.size());
+                head.write(buffer, 0, taken);
+                offset = taken;
+            }
+            for (int i = offset; i < length; i++) {
+                truncated = true;
+                if (tailLength < TAIL_BYTES) {
+                    tail[(tailStart + tailLength++) % TAIL_BYTES] = buffer[i];
+                } else {
+                    tail[tailStart] = buffer[i];
+                    tailStart = (tailStart + 1) % TAIL_BYTES;
+                }
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            String text = head.toString(StandardCharsets.UTF_8);
+            if (!truncated) {
+                return text;
+            }
+            byte[] kept = new byte[tailLength];
+            for (int i = 0; i < tailLength; i++) {
+                kept[i] = tail[(tailStart + i) % TAIL_BYTES];
+            }
+            return text + "\n... [output truncated] ...\n" + new String(kept, StandardCharsets.UTF_8);
+        }
+    }
+}
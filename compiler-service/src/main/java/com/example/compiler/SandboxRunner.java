@@ -0,0 +1,35 @@
+package com.example.compiler;
+
+import java.util.List;
+
+/**
+ * Compiles a submission and runs its binary on test inputs in some kind of
+ * sandbox. The backend is chosen with {@code compiler.sandbox.backend}:
+ * {@code docker} ({@link DockerService}, the default) isolates every run in a
+ * container; {@code local} ({@link LocalProcessSandbox}) runs plain processes
+ * under rlimits and is only meant for trusted, high-throughput workloads.
+ */
+public interface SandboxRunner {
+
+    /**
+     * Compiles {@code code} into the submission's work directory. Every test
+     * case of the submission is then executed with {@link #runBinary}.
+     */
+    CompileResult compile(String submissionId, String code);
+
+    /**
+     * Runs the compiled binary of a submission on one input. stdout is streamed
+     * through {@code comparator} when one is given; a comparator that aborts on
+     * mismatch also means the output is not retained.
+     */
+    RunResult runBinary(String submissionId, String input, int timeLimit, StreamingComparator comparator);
+
+    /**
+     * Runs the compiled binary once per input inside a single sandbox session,
+     * each run under its own limits, and returns the results in input order with
+     * full stdout for the caller to compare. With {@code stopOnFailure} the batch
+     * ends after the first run that crashes or times out, so the list can be
+     * shorter than {@code inputs}.
+     */
+    List<RunResult> runBatch(String submissionId, List<String> inputs, int timeLimit, boolean stopOnFailure);
+}
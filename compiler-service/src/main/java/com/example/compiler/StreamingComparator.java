@@ -0,0 +1,62 @@
+package com.example.compiler;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares program output against the expected output as it streams in,
+ * with the same semantics as {@code output.trim().equals(expected.trim())}:
+ * leading and trailing whitespace is ignored, everything in between must match
+ * byte for byte. The first mismatching byte is detected without buffering the
+ * output, so a wrong answer can be killed early.
+ */
+public class StreamingComparator {
+
+    private final byte[] expected;
+    private final boolean abortOnMismatch;
+    private int position;
+    private boolean started;
+    private boolean mismatch;
+
+    public StreamingComparator(String expected, boolean abortOnMismatch) {
+        this.expected = (expected != null ? expected.trim() : "").getBytes(StandardCharsets.UTF_8);
+        this.abortOnMismatch = abortOnMismatch;
+    }
+
+    public boolean isAbortOnMismatch() {
+        return abortOnMismatch;
+    }
+
+    /**
+     * Feeds the next chunk of output. Returns false once the output can no
+     * longer match the expected text.
+     */
+    public boolean feed(byte[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length && !mismatch; i++) {
+            byte b = buffer[i];
+            boolean whitespace = (b & 0xFF) <= ' ';
+            if (!started) {
+                if (whitespace) {
+                    continue;
+                }
+                started = true;
+            }
+            if (position < expected.length) {
+                if (b != expected[position]) {
+                    mismatch = true;
+                }
+                position++;
+            } else if (!whitespace) {
+                // Anything but trailing whitespace after the expected text
+                mismatch = true;
+            }
+        }
+        return !mismatch;
+    }
+
+    /**
+     * Whether the output fed so far, taken as complete, matches.
+     */
+    public boolean matches() {
+        return !mismatch && position == expected.length;
+    }
+}
@@ -1,47 +1,194 @@
 package com.example.compiler;
 
+import com.example.dto.CompactSubmissionTask;
 import com.example.dto.SubmissionTask;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Consumes submission tasks from Redis streams as a member of the
+ * {@code compiler-workers} consumer group, so several compiler-service nodes
+ * share the load. A task is acknowledged only after its evaluation has been
+ * finalized. Entries left pending by a dead worker are reclaimed after
+ * {@code compiler.queue.reclaim-idle-ms}; entries that keep failing are given
+ * up on after {@code compiler.queue.max-deliveries}.
+ *
+ * <p>Tasks are only read while a worker slot ({@code compiler.worker.threads})
+ * is free, so a busy node leaves new work in the stream for idle nodes and
+ * never holds more tasks than it is evaluating.
+ *
+ * <p>Interactive runs and full judging arrive on separate {@link Lane lanes}.
+ * {@code compiler.queue.interactive-reserved-slots} workers are never given
+ * to grading, and while both lanes have work up to
+ * {@code compiler.queue.interactive-weight} interactive tasks are taken for
+ * every grading task. Within a lane, users are served round-robin by the
+ * {@link FairShareScheduler}.
+ *
+ * <p>An interactive run is superseded when the same user starts a newer run
+ * on the same question: a queued one is finished as SUPERSEDED without
+ * running, and a running one is cancelled.
+ */
 @Service
 public class SubmissionConsumer {
 
+    private static final String GROUP_NAME = "compiler-workers";
+    private static final String TASK_FIELD = "task";
+    private static final String ENQUEUED_AT_FIELD = "enqueuedAt";
+    // List queue used before the streams; drained into them on start-up
+    private static final String LEGACY_QUEUE_NAME = "submission_queue";
+    // Written by the API for every interactive run: latest submission id per user and question
+    private static final String LATEST_RUN_PREFIX = "submission_stream:interactive:latest:";
+    private static final String SUPERSEDED_CHANNEL = "submission_superseded";
+
+    /** Queue lanes, each its own stream. Grading keeps the original stream name. */
+    enum Lane {
+        INTERACTIVE("submission_stream:interactive"),
+        GRADING("submission_stream");
+
+        final String stream;
+
+        Lane(String stream) {
+            this.stream = stream;
+        }
+
+        static Lane of(String jobType) {
+            return "RUN_CUSTOM".equals(jobType) || "RUN_VISIBLE".equals(jobType) ? INTERACTIVE : GRADING;
+        }
+    }
+
+    @Value("${compiler.worker.threads:4}")
+    private int workerThreads;
+
+    @Value("${compiler.queue.interactive-reserved-slots:1}")
+    private int interactiveReservedSlots;
+
+    @Value("${compiler.queue.interactive-weight:3}")
+    private int interactiveWeight;
+
+    @Value("${compiler.queue.idle-poll-ms:250}")
+    private long idlePollMs;
+
+    @Value("${compiler.queue.consumer-name:}")
+    private String consumerName;
+
+    @Value("${compiler.queue.reclaim-idle-ms:300000}")
+    private long reclaimIdleMs;
+
+    @Value("${compiler.queue.reclaim-interval-ms:30000}")
+    private long reclaimIntervalMs;
+
+    @Value("${compiler.queue.max-deliveries:3}")
+    private long maxDeliveries;
+
+    @Value("${compiler.queue.max-length:100000}")
+    private long maxLength;
+
     private final StringRedisTemplate redisTemplate;
-    private final ExecutorService executorService;
     private final EvaluationService evaluationService;
+    private final FairShareScheduler fairShareScheduler;
+    private final RedisMessageListenerContainer listenerContainer;
     private final ObjectMapper objectMapper = new ObjectMapper()
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    private static final String QUEUE_NAME = "submission_queue";
+    private ExecutorService executorService;
+    // One permit per worker thread; a task is only read from a stream while holding one
+    private Semaphore slots;
+    private int gradingLimit;
+    private final AtomicInteger gradingInFlight = new AtomicInteger();
+    // Interactive tasks that may still be taken before grading gets its turn
+    private int interactiveCredit;
+    // Record ids this node is currently evaluating; kept alive so no other node reclaims them
+    private final Map<Lane, Set<String>> inFlight = new EnumMap<>(Lane.class);
+    private final Map<Lane, QueueWaitStats> waitStats = new EnumMap<>(Lane.class);
+
+    /** An interactive task being evaluated on this node. */
+    private static class RunningTask {
+        final SubmissionTask task;
+        // Guarded by the RunningTask itself, so an interrupt never reaches the worker's next task
+        Thread worker;
+        volatile Long supersededBy;
+
+        RunningTask(SubmissionTask task) {
+            this.task = task;
+        }
+    }
+
+    private final Map<Long, RunningTask> runningInteractive = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reclaimer;
     private volatile boolean running = true;
 
-    public SubmissionConsumer(StringRedisTemplate redisTemplate, EvaluationService evaluationService) {
+    public SubmissionConsumer(StringRedisTemplate redisTemplate, EvaluationService evaluationService,
+            FairShareScheduler fairShareScheduler, RedisMessageListenerContainer listenerContainer) {
         this.redisTemplate = redisTemplate;
         this.evaluationService = evaluationService;
-        this.executorService = Executors.newFixedThreadPool(4);
+        this.fairShareScheduler = fairShareScheduler;
+        this.listenerContainer = listenerContainer;
+        for (Lane lane : Lane.values()) {
+            inFlight.put(lane, ConcurrentHashMap.newKeySet());
+            waitStats.put(lane, new QueueWaitStats());
+        }
     }
 
     @PostConstruct
     public void init() {
+        if (consumerName == null || consumerName.isBlank()) {
+            consumerName = defaultConsumerName();
+        }
+        // Grading always keeps at least one worker, however many are reserved
+        gradingLimit = Math.max(1, workerThreads - interactiveReservedSlots);
+        interactiveCredit = interactiveWeight;
+        slots = new Semaphore(workerThreads, true);
+        AtomicInteger counter = new AtomicInteger();
+        executorService = Executors.newFixedThreadPool(workerThreads,
+                r -> new Thread(r, "SubmissionWorker-" + counter.incrementAndGet()));
+        for (Lane lane : Lane.values()) {
+            createGroup(lane);
+        }
+        migrateLegacyQueue();
+        listenerContainer.addMessageListener((message, pattern) -> onSuperseded(message.getBody()),
+                new ChannelTopic(SUPERSEDED_CHANNEL));
+
         Thread consumerThread = new Thread(() -> {
             while (running) {
                 try {
-                    String taskJson = redisTemplate.opsForList().rightPop(QUEUE_NAME, 1,
-                            java.util.concurrent.TimeUnit.SECONDS);
-                    if (taskJson != null && running) {
-                        SubmissionTask task = objectMapper.readValue(taskJson, SubmissionTask.class);
-                        executorService.submit(() -> processTask(task));
+                    // Wait for a free worker, then take the next task for it
+                    if (!slots.tryAcquire(1, TimeUnit.SECONDS)) {
+                        continue;
+                    }
+                    boolean dispatched = false;
+                    try {
+                        dispatched = pollNext();
+                    } finally {
+                        if (!dispatched) {
+                            slots.release();
+                        }
                     }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 } catch (Exception e) {
                     if (running) {
                         System.err.println("Error consuming from Redis: " + e.getMessage());
+                        sleepQuietly(1000);
                     }
                 }
             }
@@ -49,21 +196,368 @@ public class SubmissionConsumer {
         });
         consumerThread.setName("SubmissionConsumerThread");
         consumerThread.start();
+
+        reclaimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SubmissionReclaimer");
+            t.setDaemon(true);
+            return t;
+        });
+        reclaimer.scheduleWithFixedDelay(this::reclaim, reclaimIntervalMs, reclaimIntervalMs, TimeUnit.MILLISECONDS);
+        System.out.println("SubmissionConsumer: consuming as " + consumerName + " with " + workerThreads
+                + " workers, at most " + gradingLimit + " for grading");
     }
 
     @PreDestroy
     public void shutdown() {
         System.out.println("Shutting down SubmissionConsumer...");
         running = false;
+        if (reclaimer != null) {
+            reclaimer.shutdownNow();
+        }
         executorService.shutdown();
     }
 
-    private void processTask(SubmissionTask task) {
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("consumer", consumerName);
+        metrics.put("workerThreads", workerThreads);
+        metrics.put("gradingLimit", gradingLimit);
+        metrics.put("runningInteractive", runningInteractive.size());
+        Map<String, Object> lanes = new LinkedHashMap<>();
+        for (Lane lane : Lane.values()) {
+            Map<String, Object> laneMetrics = new LinkedHashMap<>();
+            laneMetrics.put("stream", lane.stream);
+            laneMetrics.put("inFlight", inFlight.get(lane).size());
+            try {
+                laneMetrics.put("waitingUsers", fairShareScheduler.waitingUsers(lane.stream));
+                laneMetrics.put("waitingTasks", fairShareScheduler.waitingTasks(lane.stream));
+            } catch (Exception e) {
+                laneMetrics.put("waitingUsers", null);
+                laneMetrics.put("waitingTasks", null);
+            }
+            laneMetrics.put("queueWait", waitStats.get(lane).snapshot());
+            lanes.put(lane.name().toLowerCase(), laneMetrics);
+        }
+        metrics.put("lanes", lanes);
+        return metrics;
+    }
+
+    /**
+     * Takes one task for the slot the caller holds. The lane that is due goes
+     * first and the other lane is tried if it is empty; grading is skipped while
+     * it already has all the workers it may use. Entries already in a stream
+     * are read first; otherwise the next user's task is promoted into it. With
+     * nothing waiting anywhere, blocks briefly on the interactive lane.
+     */
+    private boolean pollNext() {
+        boolean gradingAllowed = gradingInFlight.get() < gradingLimit;
+        List<Lane> order = interactiveCredit > 0 || !gradingAllowed
+                ? List.of(Lane.INTERACTIVE, Lane.GRADING)
+                : List.of(Lane.GRADING, Lane.INTERACTIVE);
+        for (Lane lane : order) {
+            if (lane == Lane.GRADING && !gradingAllowed) {
+                continue;
+            }
+            MapRecord<String, Object, Object> record = readOne(lane, null);
+            if (record == null && fairShareScheduler.promote(lane.stream)) {
+                // Another node may win the promoted entry; the next poll tries again
+                record = readOne(lane, null);
+            }
+            if (record != null) {
+                return take(lane, record);
+            }
+        }
+        MapRecord<String, Object, Object> record = readOne(Lane.INTERACTIVE, Duration.ofMillis(idlePollMs));
+        return record != null && take(Lane.INTERACTIVE, record);
+    }
+
+    private boolean take(Lane lane, MapRecord<String, Object, Object> record) {
+        interactiveCredit = lane == Lane.INTERACTIVE ? interactiveCredit - 1 : interactiveWeight;
+        return dispatch(lane, record);
+    }
+
+    private MapRecord<String, Object, Object> readOne(Lane lane, Duration block) {
+        StreamReadOptions options = StreamReadOptions.empty().count(1);
+        if (block != null) {
+            options = options.block(block);
+        }
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
+                Consumer.from(GROUP_NAME, consumerName), options,
+                StreamOffset.create(lane.stream, ReadOffset.lastConsumed()));
+        return records == null || records.isEmpty() ? null : records.get(0);
+    }
+
+    /**
+     * Hands a record to a worker. The caller holds a slot for it; returns false
+     * when the record was not submitted and the slot is still the caller's.
+     */
+    private boolean dispatch(Lane lane, MapRecord<String, Object, Object> record) {
+        Object taskJson = record.getValue().get(TASK_FIELD);
+        SubmissionTask task;
+        try {
+            task = parseTask(String.valueOf(taskJson));
+        } catch (Exception e) {
+            // Unparseable entries can never succeed; drop them instead of redelivering forever
+            System.err.println("SubmissionConsumer: dropping malformed entry " + record.getId() + ": " + e.getMessage());
+            acknowledge(lane, record.getId());
+            return false;
+        }
+        if (!inFlight.get(lane).add(record.getId().getValue())) {
+            return false;
+        }
+        waitStats.get(lane).record(System.currentTimeMillis() - enqueuedAt(record));
+        waitStats.get(lane).recordPayload(String.valueOf(taskJson).getBytes(StandardCharsets.UTF_8).length,
+                task.code() == null);
+        if (lane == Lane.GRADING) {
+            gradingInFlight.incrementAndGet();
+        }
+        if (lane == Lane.INTERACTIVE) {
+            // Registered before it starts so a cancel that arrives early is not lost
+            runningInteractive.put(task.submissionId(), new RunningTask(task));
+        }
+        executorService.submit(() -> processTask(lane, record.getId(), task));
+        return true;
+    }
+
+    /**
+     * Reads either queue format: compact version 2 tasks (no code, which the
+     * evaluation loads from the submission) or full version 1 tasks from API
+     * nodes that have not been upgraded yet.
+     */
+    private SubmissionTask parseTask(String json) throws Exception {
+        JsonNode node = objectMapper.readTree(json);
+        if (node.has("v")) {
+            return objectMapper.treeToValue(node, CompactSubmissionTask.class).toTask();
+        }
+        return objectMapper.treeToValue(node, SubmissionTask.class);
+    }
+
+    /** When the task was submitted: the promoted entry's field, else the stream id's own timestamp. */
+    private static long enqueuedAt(MapRecord<String, Object, Object> record) {
+        Object enqueuedAt = record.getValue().get(ENQUEUED_AT_FIELD);
+        if (enqueuedAt != null) {
+            try {
+                return Long.parseLong(enqueuedAt.toString());
+            } catch (NumberFormatException ignored) {
+                // Fall back to the id
+            }
+        }
+        // Stream ids start with the append time in epoch milliseconds
+        return record.getId().getTimestamp();
+    }
+
+    private void processTask(Lane lane, RecordId recordId, SubmissionTask task) {
         System.out.println("Processing submission: " + task.submissionId());
+        RunningTask running = lane == Lane.INTERACTIVE ? runningInteractive.get(task.submissionId()) : null;
         try {
-            evaluationService.evaluate(task);
+            if (running != null) {
+                synchronized (running) {
+                    running.worker = Thread.currentThread();
+                }
+                Long newer = running.supersededBy != null ? running.supersededBy : latestRun(task);
+                if (newer != null) {
+                    evaluationService.supersede(task, newer);
+                } else {
+                    evaluationService.evaluate(task, () -> running.supersededBy);
+                }
+            } else {
+                evaluationService.evaluate(task);
+            }
+            acknowledge(lane, recordId);
         } catch (Exception e) {
+            // Left pending; another delivery happens once the entry is reclaimed
             e.printStackTrace();
+        } finally {
+            inFlight.get(lane).remove(recordId.getValue());
+            if (lane == Lane.GRADING) {
+                gradingInFlight.decrementAndGet();
+            }
+            if (running != null) {
+                synchronized (running) {
+                    running.worker = null;
+                    // Drop an interrupt that arrived after the evaluation had already finished
+                    Thread.interrupted();
+                }
+                runningInteractive.remove(task.submissionId());
+            }
+            slots.release();
+        }
+    }
+
+    /** Id of a newer interactive run by the same user on the same question, or null. */
+    private Long latestRun(SubmissionTask task) {
+        if (task.userId() == null) {
+            return null;
+        }
+        try {
+            String latest = redisTemplate.opsForValue().get(LATEST_RUN_PREFIX + task.userId() + ":" + task.questionId());
+            if (latest != null && Long.parseLong(latest) > task.submissionId()) {
+                return Long.parseLong(latest);
+            }
+        } catch (Exception e) {
+            // Running a stale task is harmless; only the skip is lost
+            System.err.println("SubmissionConsumer: could not check latest run: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /** Cancels older interactive runs of the same user and question that this node is running. */
+    private void onSuperseded(byte[] body) {
+        try {
+            Map<?, ?> newer = objectMapper.readValue(body, Map.class);
+            long userId = ((Number) newer.get("userId")).longValue();
+            long questionId = ((Number) newer.get("questionId")).longValue();
+            long submissionId = ((Number) newer.get("submissionId")).longValue();
+            for (RunningTask running : runningInteractive.values()) {
+                SubmissionTask task = running.task;
+                if (task.userId() != null && task.userId() == userId && task.questionId() == questionId
+                        && task.submissionId() < submissionId) {
+                    synchronized (running) {
+                        running.supersededBy = submissionId;
+                        if (running.worker != null) {
+                            // Interrupting the worker stops its sandbox run; the task then finishes as SUPERSEDED
+                            running.worker.interrupt();
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("SubmissionConsumer: bad supersede message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps this node's in-flight entries from looking idle, then claims
+     * entries that have been pending longer than {@code reclaim-idle-ms} (their
+     * worker died) and trims acknowledged history off the streams.
+     */
+    private void reclaim() {
+        try {
+            for (Lane lane : Lane.values()) {
+                heartbeat(lane);
+                reclaim(lane);
+                redisTemplate.opsForStream().trim(lane.stream, maxLength, true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("SubmissionConsumer: reclaim failed: " + e.getMessage());
+        }
+    }
+
+    private void heartbeat(Lane lane) {
+        Set<String> ids = inFlight.get(lane);
+        if (ids.isEmpty()) {
+            return;
+        }
+        // JUSTID resets the idle time without counting as another delivery
+        RecordId[] recordIds = ids.stream().map(RecordId::of).toArray(RecordId[]::new);
+        byte[] key = lane.stream.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.streamCommands()
+                .xClaimJustId(key, GROUP_NAME, consumerName, XClaimOptions.minIdle(Duration.ZERO).ids(recordIds)));
+    }
+
+    private void reclaim(Lane lane) throws InterruptedException {
+        PendingMessages pending = redisTemplate.opsForStream().pending(lane.stream, GROUP_NAME,
+                Range.unbounded(), 100);
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().toMillis() < reclaimIdleMs
+                    || inFlight.get(lane).contains(message.getIdAsString())) {
+                continue;
+            }
+            // Only take over work this node has a free worker for
+            if (lane == Lane.GRADING && gradingInFlight.get() >= gradingLimit) {
+                return;
+            }
+            if (!slots.tryAcquire(2, TimeUnit.SECONDS)) {
+                return;
+            }
+            List<MapRecord<String, Object, Object>> claimed = redisTemplate.opsForStream().claim(lane.stream,
+                    GROUP_NAME, consumerName, Duration.ofMillis(reclaimIdleMs), message.getId());
+            if (claimed.isEmpty()) {
+                // Someone else claimed it first, or the entry was trimmed away
+                slots.release();
+                continue;
+            }
+            MapRecord<String, Object, Object> record = claimed.get(0);
+            System.out.println("SubmissionConsumer: reclaimed " + record.getId() + " from "
+                    + message.getConsumerName() + " (delivery " + message.getTotalDeliveryCount() + ")");
+            if (message.getTotalDeliveryCount() >= maxDeliveries) {
+                giveUp(lane, record);
+                slots.release();
+            } else if (!dispatch(lane, record)) {
+                slots.release();
+            }
+        }
+    }
+
+    private void giveUp(Lane lane, MapRecord<String, Object, Object> record) {
+        try {
+            SubmissionTask task = parseTask(String.valueOf(record.getValue().get(TASK_FIELD)));
+            System.err.println("SubmissionConsumer: giving up on submission " + task.submissionId() + " after "
+                    + maxDeliveries + " deliveries");
+            evaluationService.abandon(task, "Evaluation failed repeatedly, please resubmit");
+        } catch (Exception e) {
+            System.err.println("SubmissionConsumer: could not mark " + record.getId() + " as failed: " + e.getMessage());
+        }
+        acknowledge(lane, record.getId());
+    }
+
+    private void acknowledge(Lane lane, RecordId recordId) {
+        try {
+            redisTemplate.opsForStream().acknowledge(lane.stream, GROUP_NAME, recordId);
+        } catch (Exception e) {
+            System.err.println("SubmissionConsumer: failed to ack " + recordId + ": " + e.getMessage());
+        }
+    }
+
+    private void createGroup(Lane lane) {
+        try {
+            redisTemplate.opsForStream().createGroup(lane.stream, ReadOffset.from("0"), GROUP_NAME);
+            System.out.println("SubmissionConsumer: created consumer group " + GROUP_NAME + " on " + lane.stream);
+        } catch (Exception e) {
+            // BUSYGROUP: another node (or an earlier run) already created it
+        }
+    }
+
+    private void migrateLegacyQueue() {
+        try {
+            String taskJson;
+            int moved = 0;
+            while ((taskJson = redisTemplate.opsForList().rightPop(LEGACY_QUEUE_NAME)) != null) {
+                Lane lane;
+                try {
+                    lane = Lane.of(parseTask(taskJson).jobType());
+                } catch (Exception e) {
+                    lane = Lane.GRADING;
+                }
+                redisTemplate.opsForStream().add(lane.stream, Map.of(TASK_FIELD, taskJson));
+                moved++;
+            }
+            if (moved > 0) {
+                System.out.println("SubmissionConsumer: moved " + moved + " tasks from " + LEGACY_QUEUE_NAME);
+            }
+        } catch (Exception e) {
+            System.err.println("SubmissionConsumer: could not drain " + LEGACY_QUEUE_NAME + ": " + e.getMessage());
+        }
+    }
+
+    private static String defaultConsumerName() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "compiler";
+        }
+        // e.g. "12345@host" on HotSpot, unique per process on the node
+        return host + "-" + ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
@@ -0,0 +1,246 @@
+package com.example.compiler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of the hidden test cases of each question, read from
+ * {@code testcases/<questionId>/hidden/in_N.txt} and {@code out_N.txt}.
+ * Entries are held in LRU order under a total size cap. Files at or above
+ * {@code mmap-threshold-bytes} are read through a memory mapping instead of a
+ * heap buffer. A question is dropped from the cache when a {@link WatchService}
+ * sees its directory change, or explicitly via {@link #invalidate}.
+ */
+@Component
+public class TestCaseCache {
+
+    @Value("${compiler.testcases.dir}")
+    private String testCasesDir;
+
+    @Value("${compiler.testcases.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${compiler.testcases.cache.max-bytes:268435456}")
+    private long maxBytes;
+
+    @Value("${compiler.testcases.cache.mmap-threshold-bytes:1048576}")
+    private long mmapThresholdBytes;
+
+    private record Entry(List<TestCaseData> testCases, long bytes) {
+    }
+
+    // Access-ordered so iteration starts at the least recently used question
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    // Bumped by every invalidation so a load that raced with one is not cached
+    private long generation;
+    // Per-question count of invalidations, for caches of results derived from the test cases
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+
+    private final Map<WatchKey, Long> watchedQuestions = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private Thread watchThread;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Path root = Paths.get(testCasesDir).toAbsolutePath();
+            Files.createDirectories(root);
+            watchService = root.getFileSystem().newWatchService();
+            // Question directories created or removed underneath the root
+            root.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            watchThread = new Thread(this::watch, "TestCaseCacheWatcher");
+            watchThread.setDaemon(true);
+            watchThread.start();
+        } catch (IOException e) {
+            // Explicit invalidation from saveTestCases still keeps the cache correct
+            System.err.println("TestCaseCache: file watching unavailable: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            System.err.println("TestCaseCache: failed to close watch service: " + e.getMessage());
+        }
+    }
+
+    /** Hidden test cases of a question in file-name order; empty if it has none. */
+    public List<TestCaseData> hidden(Long questionId) throws IOException {
+        if (!enabled) {
+            return load(questionId).testCases();
+        }
+        long startedGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(questionId);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.testCases();
+            }
+            startedGeneration = generation;
+        }
+        misses.incrementAndGet();
+        watch(questionId);
+        Entry loaded = load(questionId);
+        synchronized (this) {
+            if (generation == startedGeneration && loaded.bytes() <= maxBytes) {
+                Entry previous = entries.put(questionId, loaded);
+                if (previous != null) {
+                    totalBytes -= previous.bytes();
+                }
+                totalBytes += loaded.bytes();
+                evictIfNeeded();
+            }
+        }
+        return loaded.testCases();
+    }
+
+    public synchronized void invalidate(Long questionId) {
+        generation++;
+        versions.merge(questionId, 1L, Long::sum);
+        Entry removed = entries.remove(questionId);
+        if (removed != null) {
+            totalBytes -= removed.bytes();
+            invalidations.incrementAndGet();
+            System.out.println("TestCaseCache: invalidated question " + questionId);
+        }
+    }
+
+    /** Changes whenever the question's hidden test cases may have changed. */
+    public long version(Long questionId) {
+        return versions.getOrDefault(questionId, 0L);
+    }
+
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        metrics.put("enabled", enabled);
+        metrics.put("questions", entries.size());
+        metrics.put("bytes", totalBytes);
+        metrics.put("maxBytes", maxBytes);
+        metrics.put("hits", h);
+        metrics.put("misses", m);
+        metrics.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        metrics.put("evictions", evictions.get());
+        metrics.put("invalidations", invalidations.get());
+        return metrics;
+    }
+
+    private Entry load(Long questionId) throws IOException {
+        List<TestCaseData> testCases = new ArrayList<>();
+        long bytes = 0;
+        File hiddenDir = hiddenDir(questionId).toFile();
+        File[] files = hiddenDir.listFiles((d, name) -> name.startsWith("in_") && name.endsWith(".txt"));
+        if (files != null) {
+            Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+            for (File inFile : files) {
+                String input = read(inFile.toPath());
+                String expected = read(new File(hiddenDir, inFile.getName().replace("in_", "out_")).toPath());
+                testCases.add(new TestCaseData(input, expected));
+                // Strings are UTF-16 on the heap in the worst case
+                bytes += 2L * (input.length() + expected.length());
+            }
+        }
+        return new Entry(Collections.unmodifiableList(testCases), bytes);
+    }
+
+    private String read(Path file) throws IOException {
+        if (Files.size(file) < mmapThresholdBytes) {
+            return Files.readString(file);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+    }
+
+    private Path hiddenDir(Long questionId) {
+        return Paths.get(testCasesDir, String.valueOf(questionId), "hidden").toAbsolutePath();
+    }
+
+    /** Registers the question's hidden directory (or the question directory until it exists). */
+    private void watch(Long questionId) {
+        if (watchService == null) {
+            return;
+        }
+        Path dir = hiddenDir(questionId);
+        if (!Files.isDirectory(dir)) {
+            dir = dir.getParent();
+        }
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedQuestions.put(key, questionId);
+        } catch (IOException e) {
+            System.err.println("TestCaseCache: cannot watch " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private void watch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Long questionId = watchedQuestions.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (questionId != null) {
+                    invalidate(questionId);
+                } else if (event.context() instanceof Path changed) {
+                    // A question directory under the root was created or removed
+                    try {
+                        invalidate(Long.parseLong(changed.getFileName().toString()));
+                    } catch (NumberFormatException ignored) {
+                        // Not a question directory
+                    }
+                }
+            }
+            if (!key.reset()) {
+                watchedQuestions.remove(key);
+            }
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Long, Entry> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue().bytes();
+            evictions.incrementAndGet();
+        }
+    }
+}
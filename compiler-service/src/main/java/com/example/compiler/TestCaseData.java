@@ -0,0 +1,7 @@
+package com.example.compiler;
+
+/**
+ * Input and expected output of a single test case.
+ */
+public record TestCaseData(String input, String expected) {
+}
@@ -0,0 +1,130 @@
+package com.example.compiler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Runs the test cases of one submission either one after another or
+ * concurrently. Every case, in both modes, holds one of the node-wide CPU slots
+ * while it runs, so parallel questions cannot oversubscribe the worker.
+ * Results are always returned in case order.
+ */
+@Component
+public class TestCaseExecutor {
+
+    @Value("${compiler.parallel.cpu-slots:0}")
+    private int cpuSlots;
+
+    private Semaphore slots;
+    private ExecutorService caseExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (cpuSlots <= 0) {
+            cpuSlots = Runtime.getRuntime().availableProcessors();
+        }
+        slots = new Semaphore(cpuSlots, true);
+        AtomicInteger counter = new AtomicInteger();
+        caseExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "TestCaseWorker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        System.out.println("TestCaseExecutor: " + cpuSlots + " CPU slots");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        caseExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs cases {@code 0..count-1}. With {@code stopOnFirstFailure} the result
+     * is the prefix up to and including the lowest-index failing case, exactly
+     * as a sequential run would produce; cases after it are skipped or cancelled.
+     */
+    public <T> List<T> execute(int count, boolean parallel, boolean stopOnFirstFailure,
+            IntFunction<T> runCase, Predicate<T> failed) throws InterruptedException {
+        if (!parallel || count <= 1) {
+            List<T> results = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                T result = withSlot(i, runCase);
+                results.add(result);
+                if (stopOnFirstFailure && failed.test(result)) {
+                    break;
+                }
+            }
+            return results;
+        }
+
+        AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            futures.add(caseExecutor.submit(() -> {
+                // A lower-index case already failed; this one can no longer be reported
+                if (stopOnFirstFailure && firstFailure.get() < index) {
+                    return null;
+                }
+                T result = withSlot(index, runCase);
+                if (failed.test(result)) {
+                    firstFailure.accumulateAndGet(index, Math::min);
+                }
+                return result;
+            }));
+        }
+
+        List<T> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                T result;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Test case " + (i + 1) + " failed to execute", e.getCause());
+                }
+                results.add(result);
+                if (stopOnFirstFailure && failed.test(result)) {
+                    break;
+                }
+            }
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs work that executes several cases back to back in one sandbox (a
+     * batch) while holding a single CPU slot.
+     */
+    public <T> T executeBatch(Supplier<T> batch) throws InterruptedException {
+        slots.acquire();
+        try {
+            return batch.get();
+        } finally {
+            slots.release();
+        }
+    }
+
+    private <T> T withSlot(int index, IntFunction<T> runCase) throws InterruptedException {
+        slots.acquire();
+        try {
+            return runCase.apply(index);
+        } finally {
+            slots.release();
+        }
+    }
+}
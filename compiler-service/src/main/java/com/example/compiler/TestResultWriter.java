@@ -0,0 +1,47 @@
+package com.example.compiler;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Writes the per-test-case outcome of a judged submission to the
+ * {@code test_results} table in one JDBC batch, so failure rates per case can
+ * be aggregated in SQL instead of parsing result metadata.
+ */
+@Component
+public class TestResultWriter {
+
+    private static final String INSERT = "INSERT INTO test_results "
+            + "(submission_id, question_id, case_index, case_type, verdict, cpu_time_ms, wall_time_ms, memory_kb) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    public record Row(int caseIndex, String caseType, String verdict, Long cpuTimeMs, Long wallTimeMs,
+            Long memoryKb) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TestResultWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Replaces the rows of a submission, so a redelivered task does not count its cases twice. */
+    @Transactional
+    public void write(Long submissionId, Long questionId, List<Row> rows) {
+        jdbcTemplate.update("DELETE FROM test_results WHERE submission_id = ?", submissionId);
+        jdbcTemplate.batchUpdate(INSERT, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, submissionId);
+            ps.setLong(2, questionId);
+            ps.setInt(3, row.caseIndex());
+            ps.setString(4, row.caseType());
+            ps.setString(5, row.verdict());
+            ps.setObject(6, row.cpuTimeMs(), Types.BIGINT);
+            ps.setObject(7, row.wallTimeMs(), Types.BIGINT);
+            ps.setObject(8, row.memoryKb(), Types.BIGINT);
+        });
+    }
+}
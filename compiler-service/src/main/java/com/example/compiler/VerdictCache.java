@@ -0,0 +1,117 @@
+package com.example.compiler;
+
+import com.example.bean.Question;
+import com.example.dto.SubmissionTask;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Final verdicts of judged submissions, so resubmitting unchanged code is
+ * answered without running it again. Entries are keyed by question, the
+ * version of its hidden test cases (see {@link TestCaseCache#version}) and a
+ * hash of the code, language, limits and visible test cases. They expire after
+ * {@code compiler.verdict-cache.ttl-ms} and are evicted in LRU order beyond
+ * {@code compiler.verdict-cache.max-entries}.
+ */
+@Component
+public class VerdictCache {
+
+    @Value("${compiler.verdict-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${compiler.verdict-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${compiler.verdict-cache.ttl-ms:3600000}")
+    private long ttlMs;
+
+    public record Verdict(String status, String resultMetadata) {
+    }
+
+    private record Entry(Long questionId, Verdict verdict, long expiresAt) {
+    }
+
+    private final TestCaseCache testCaseCache;
+
+    // Access-ordered so iteration starts at the least recently used verdict
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public VerdictCache(TestCaseCache testCaseCache) {
+        this.testCaseCache = testCaseCache;
+    }
+
+    /** Cache key of a submission, or null when caching is disabled. */
+    public String key(SubmissionTask task, Question question) {
+        if (!enabled) {
+            return null;
+        }
+        return task.questionId() + ":" + testCaseCache.version(task.questionId()) + ":"
+                + BinaryCache.key(task.language(), String.valueOf(task.timeLimit()),
+                        String.valueOf(task.memoryLimit()), question.getVisibleTestCasesJson(), task.code());
+    }
+
+    public Verdict get(String key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.verdict();
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, Long questionId, String status, String resultMetadata) {
+        if (key == null) {
+            return;
+        }
+        synchronized (this) {
+            entries.put(key, new Entry(questionId, new Verdict(status, resultMetadata),
+                    System.currentTimeMillis() + ttlMs));
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        stores.incrementAndGet();
+    }
+
+    /** Drops every verdict of a question; its test cases changed. */
+    public synchronized void invalidate(Long questionId) {
+        entries.values().removeIf(entry -> entry.questionId().equals(questionId));
+    }
+
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        metrics.put("enabled", enabled);
+        metrics.put("entries", entries.size());
+        metrics.put("maxEntries", maxEntries);
+        metrics.put("hits", h);
+        metrics.put("misses", m);
+        metrics.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        metrics.put("stores", stores.get());
+        metrics.put("evictions", evictions.get());
+        return metrics;
+    }
+}
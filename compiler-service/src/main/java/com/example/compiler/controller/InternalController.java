@@ -1,5 +1,12 @@
 package com.example.compiler.controller;
 
+import com.example.compiler.BinaryCache;
+import com.example.compiler.QuestionCache;
+import com.example.compiler.RunOutputCache;
+import com.example.compiler.SandboxPool;
+import com.example.compiler.SubmissionConsumer;
+import com.example.compiler.TestCaseCache;
+import com.example.compiler.VerdictCache;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -8,6 +15,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +26,39 @@ public class InternalController {
     @Value("${compiler.testcases.dir}")
     private String testCasesDir;
 
+    private final SandboxPool sandboxPool;
+    private final BinaryCache binaryCache;
+    private final TestCaseCache testCaseCache;
+    private final VerdictCache verdictCache;
+    private final RunOutputCache runOutputCache;
+    private final QuestionCache questionCache;
+    private final SubmissionConsumer submissionConsumer;
+
+    public InternalController(SandboxPool sandboxPool, BinaryCache binaryCache, TestCaseCache testCaseCache,
+            VerdictCache verdictCache, RunOutputCache runOutputCache, QuestionCache questionCache,
+            SubmissionConsumer submissionConsumer) {
+        this.sandboxPool = sandboxPool;
+        this.binaryCache = binaryCache;
+        this.testCaseCache = testCaseCache;
+        this.verdictCache = verdictCache;
+        this.runOutputCache = runOutputCache;
+        this.questionCache = questionCache;
+        this.submissionConsumer = submissionConsumer;
+    }
+
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("consumer", submissionConsumer.metrics());
+        metrics.put("sandboxPool", sandboxPool.metrics());
+        metrics.put("binaryCache", binaryCache.metrics());
+        metrics.put("testCaseCache", testCaseCache.metrics());
+        metrics.put("verdictCache", verdictCache.metrics());
+        metrics.put("runOutputCache", runOutputCache.metrics());
+        metrics.put("questionCache", questionCache.metrics());
+        return ResponseEntity.ok(metrics);
+    }
+
     @PostMapping("/testcases/{questionId}")
     public ResponseEntity<Void> saveTestCases(@PathVariable Long questionId,
             @RequestBody List<Map<String, String>> testCases) {
@@ -45,10 +86,14 @@ public class InternalController {
                 Files.writeString(Paths.get(hiddenDir, "out_" + (i + 1) + ".txt"), output != null ? output : "");
             } catch (IOException e) {
                 e.printStackTrace();
+                testCaseCache.invalidate(questionId);
+                verdictCache.invalidate(questionId);
                 return ResponseEntity.internalServerError().build();
             }
         }
 
+        testCaseCache.invalidate(questionId);
+        verdictCache.invalidate(questionId);
         return ResponseEntity.ok().build();
     }
 }
@@ -10,5 +10,6 @@ public record SubmissionTask(
                 Integer timeLimit,
                 Integer memoryLimit,
                 String jobType,
-                String customInput) implements Serializable {
+                String customInput,
+                Long userId) implements Serializable {
 }
@@ -0,0 +1,261 @@
+/*
+ * Sandbox run harness. Runs a program under a wall-clock and CPU time limit
+ * and reports its resource usage (from wait4 rusage) as the last line on
+ * stderr:
+ *
+ *   __IITJ_STATS__ <cpu_ms> <wall_ms> <peak_rss_kb> <timed_out>
+ *
+ * The exit status is the program's own, or 128 + signal if it was killed.
+ * Optional rlimits for backends without cgroup limits (the local backend):
+ *   -m <kb>  address space limit
+ *   -f <kb>  largest file the program may write
+ *
+ * With -u <uid>:<gid> (the harness must then run as root) the program runs
+ * as that unprivileged user, and after every run each process of that user
+ * is killed, including ones that left the program's process group with
+ * setsid, so nothing it started outlives the run.
+ *
+ * Batch mode (-b <dir>) runs the program once for every <dir>/1.in, 2.in, ...
+ * in order, each under its own limits, writing its stdout and stderr to
+ * <i>.out and <i>.err and a <i>.stat file containing
+ *
+ *   <exit_status> <cpu_ms> <wall_ms> <peak_rss_kb> <timed_out>
+ *
+ * With -s the batch stops after the first case that exits non-zero or times
+ * out.
+ *
+ * usage: run [-m kb] [-f kb] [-u uid:gid] [-b dir [-s]] <time_limit_ms> <program> [args...]
+ */
+#define _GNU_SOURCE
+#include <errno.h>
+#include <fcntl.h>
+#include <grp.h>
+#include <signal.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/resource.h>
+#include <sys/time.h>
+#include <sys/types.h>
+#include <sys/wait.h>
+#include <time.h>
+#include <unistd.h>
+
+struct stats {
+    long cpu_ms;
+    long long wall_ms;
+    long peak_rss_kb;
+    int timed_out;
+};
+
+/* Unprivileged user the program runs as (-u); -1 runs it as the harness's own user */
+static long run_uid = -1;
+static long run_gid = -1;
+
+static long long now_ms(void) {
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return ts.tv_sec * 1000LL + ts.tv_nsec / 1000000;
+}
+
+static long tv_ms(struct timeval tv) {
+    return tv.tv_sec * 1000L + tv.tv_usec / 1000;
+}
+
+static void limit_resource(int resource, long kb) {
+    if (kb > 0) {
+        struct rlimit rl;
+        rl.rlim_cur = rl.rlim_max = (rlim_t) kb * 1024;
+        setrlimit(resource, &rl);
+    }
+}
+
+/*
+ * Kills every process of the program user. Done from a child that switched to
+ * that user, since kill(-1) then reaches exactly that user's processes.
+ */
+static void kill_user_processes(void) {
+    if (run_uid < 0) {
+        return;
+    }
+    pid_t pid = fork();
+    if (pid == 0) {
+        if (setgid((gid_t) run_gid) == 0 && setuid((uid_t) run_uid) == 0) {
+            kill(-1, SIGKILL);
+        }
+        _exit(0);
+    }
+    if (pid > 0) {
+        waitpid(pid, NULL, 0);
+    }
+}
+
+/*
+ * Runs the program once with the given descriptors as stdin/stdout/stderr
+ * (-1 keeps the harness's own). Returns the exit status, 128 + signal, or -1
+ * if the program could not be started.
+ */
+static int run_one(long limit, long memory_kb, long file_kb, char **program,
+                   int in_fd, int out_fd, int err_fd, struct stats *st) {
+    long long start = now_ms();
+
+    pid_t pid = fork();
+    if (pid < 0) {
+        perror("fork");
+        return -1;
+    }
+    if (pid == 0) {
+        /* Own process group so a timeout can kill everything the program spawned */
+        setpgid(0, 0);
+        if (in_fd >= 0) dup2(in_fd, STDIN_FILENO);
+        if (out_fd >= 0) dup2(out_fd, STDOUT_FILENO);
+        if (err_fd >= 0) dup2(err_fd, STDERR_FILENO);
+        struct rlimit cpu;
+        cpu.rlim_cur = (limit + 999) / 1000 + 1;
+        cpu.rlim_max = cpu.rlim_cur + 1;
+        setrlimit(RLIMIT_CPU, &cpu);
+        limit_resource(RLIMIT_AS, memory_kb);
+        limit_resource(RLIMIT_FSIZE, file_kb);
+        if (run_uid >= 0 && (setgroups(0, NULL) != 0 || setgid((gid_t) run_gid) != 0
+                             || setuid((uid_t) run_uid) != 0)) {
+            perror("setuid");
+            _exit(127);
+        }
+        execv(program[0], program);
+        perror("execv");
+        _exit(127);
+    }
+    setpgid(pid, pid);
+
+    int status = 0;
+    int timed_out = 0;
+    struct rusage ru;
+    for (;;) {
+        pid_t r = wait4(pid, &status, WNOHANG, &ru);
+        if (r == pid) {
+            break;
+        }
+        if (r < 0 && errno != EINTR) {
+            perror("wait4");
+            return -1;
+        }
+        if (!timed_out && now_ms() - start > limit) {
+            timed_out = 1;
+            kill(-pid, SIGKILL);
+            kill(pid, SIGKILL);
+        }
+        struct timespec pause = {0, 2000000};
+        nanosleep(&pause, NULL);
+    }
+    st->wall_ms = now_ms() - start;
+    kill(-pid, SIGKILL);
+    kill_user_processes();
+
+    st->cpu_ms = tv_ms(ru.ru_utime) + tv_ms(ru.ru_stime);
+    if (st->cpu_ms > limit || (WIFSIGNALED(status) && WTERMSIG(status) == SIGXCPU)) {
+        timed_out = 1;
+    }
+    st->peak_rss_kb = ru.ru_maxrss;
+    st->timed_out = timed_out;
+
+    if (WIFEXITED(status)) {
+        return WEXITSTATUS(status);
+    }
+    if (WIFSIGNALED(status)) {
+        return 128 + WTERMSIG(status);
+    }
+    return 1;
+}
+
+static int run_batch(const char *dir, int stop_on_failure, long limit, long memory_kb, long file_kb,
+                     char **program) {
+    char path[4096];
+    for (int i = 1;; i++) {
+        snprintf(path, sizeof(path), "%s/%d.in", dir, i);
+        int in_fd = open(path, O_RDONLY);
+        if (in_fd < 0) {
+            return 0;
+        }
+        snprintf(path, sizeof(path), "%s/%d.out", dir, i);
+        int out_fd = open(path, O_WRONLY | O_CREAT | O_TRUNC, 0644);
+        snprintf(path, sizeof(path), "%s/%d.err", dir, i);
+        int err_fd = open(path, O_WRONLY | O_CREAT | O_TRUNC, 0644);
+        if (out_fd < 0 || err_fd < 0) {
+            perror("open");
+            return 2;
+        }
+
+        struct stats st = {0, 0, 0, 0};
+        int code = run_one(limit, memory_kb, file_kb, program, in_fd, out_fd, err_fd, &st);
+        close(in_fd);
+        close(out_fd);
+        close(err_fd);
+        if (code < 0) {
+            return 2;
+        }
+
+        snprintf(path, sizeof(path), "%s/%d.stat", dir, i);
+        FILE *stat = fopen(path, "w");
+        if (stat == NULL) {
+            perror("fopen");
+            return 2;
+        }
+        fprintf(stat, "%d %ld %lld %ld %d\n", code, st.cpu_ms, st.wall_ms, st.peak_rss_kb, st.timed_out);
+        fclose(stat);
+
+        if (stop_on_failure && (code != 0 || st.timed_out)) {
+            return 0;
+        }
+    }
+}
+
+int main(int argc, char **argv) {
+    long memory_kb = 0;
+    long file_kb = 0;
+    const char *batch_dir = NULL;
+    int stop_on_failure = 0;
+    int arg = 1;
+    while (arg < argc && argv[arg][0] == '-') {
+        if (strcmp(argv[arg], "-s") == 0) {
+            stop_on_failure = 1;
+            arg += 1;
+            continue;
+        }
+        if (arg + 1 >= argc) {
+            break;
+        }
+        if (strcmp(argv[arg], "-m") == 0) {
+            memory_kb = atol(argv[arg + 1]);
+        } else if (strcmp(argv[arg], "-f") == 0) {
+            file_kb = atol(argv[arg + 1]);
+        } else if (strcmp(argv[arg], "-u") == 0) {
+            if (sscanf(argv[arg + 1], "%ld:%ld", &run_uid, &run_gid) != 2 || run_uid <= 0 || run_gid <= 0) {
+                fprintf(stderr, "invalid -u %s\n", argv[arg + 1]);
+                return 2;
+            }
+        } else if (strcmp(argv[arg], "-b") == 0) {
+            batch_dir = argv[arg + 1];
+        } else {
+            break;
+        }
+        arg += 2;
+    }
+    if (argc - arg < 2) {
+        fprintf(stderr, "usage: %s [-m kb] [-f kb] [-u uid:gid] [-b dir [-s]] <time_limit_ms> <program> [args...]\n", argv[0]);
+        return 2;
+    }
+    long limit = atol(argv[arg]);
+    char **program = argv + arg + 1;
+
+    if (batch_dir != NULL) {
+        return run_batch(batch_dir, stop_on_failure, limit, memory_kb, file_kb, program);
+    }
+
+    struct stats st = {0, 0, 0, 0};
+    int code = run_one(limit, memory_kb, file_kb, program, -1, -1, -1, &st);
+    if (code < 0) {
+        return 2;
+    }
+    fprintf(stderr, "\n__IITJ_STATS__ %ld %lld %ld %d\n", st.cpu_ms, st.wall_ms, st.peak_rss_kb, st.timed_out);
+    return code;
+}
@@ -0,0 +1,24 @@
+package com.example.DAO;
+
+import java.time.LocalDateTime;
+
+/** One row of the admin submissions list: no code, no result metadata, only names from user and question. */
+public interface AdminSubmissionView {
+    Long getId();
+
+    Long getUserId();
+
+    String getUsername();
+
+    Long getQuestionId();
+
+    String getQuestionTitle();
+
+    String getLanguage();
+
+    String getType();
+
+    String getStatus();
+
+    LocalDateTime getCreatedAt();
+}
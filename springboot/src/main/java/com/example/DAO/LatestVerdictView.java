@@ -0,0 +1,14 @@
+package com.example.DAO;
+
+import java.time.LocalDateTime;
+
+/** The most recent graded submission of a user on one question. */
+public interface LatestVerdictView {
+    Long getQuestionId();
+
+    Long getSubmissionId();
+
+    String getStatus();
+
+    LocalDateTime getCreatedAt();
+}
@@ -0,0 +1,20 @@
+package com.example.DAO;
+
+import java.time.LocalDateTime;
+
+/** One row of a student's submission history: no code or result metadata, only the question title. */
+public interface SubmissionHistoryView {
+    Long getId();
+
+    Long getQuestionId();
+
+    String getQuestionTitle();
+
+    String getLanguage();
+
+    String getType();
+
+    String getStatus();
+
+    LocalDateTime getCreatedAt();
+}
@@ -0,0 +1,17 @@
+package com.example.DAO;
+
+import com.example.bean.SubmissionOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SubmissionOutboxRepository extends JpaRepository<SubmissionOutbox, Long> {
+
+    // SKIP LOCKED lets several API nodes relay concurrently without publishing the same row twice
+    @Query(value = "SELECT * FROM submission_outbox ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<SubmissionOutbox> lockBatch(@Param("limit") int limit);
+}
@@ -2,14 +2,55 @@ package com.example.DAO;
 
 import com.example.bean.Submission;
 import com.example.bean.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface SubmissionRepository extends JpaRepository<Submission, Long> {
     List<Submission> findByUser(User user);
 
-    List<Submission> findByUserOrderByCreatedAtDesc(User user);
+    /** Newest-first page of one user's submissions, joined only to the question for its title. */
+    @Query("select s.id as id, q.id as questionId, q.title as questionTitle, s.language as language, "
+            + "s.type as type, s.status as status, s.createdAt as createdAt "
+            + "from Submission s left join s.question q "
+            + "where s.user.id = :userId "
+            + "order by s.createdAt desc, s.id desc")
+    List<SubmissionHistoryView> findHistory(@Param("userId") Long userId, Pageable page);
+
+    /** Latest graded submission of the user on every question they have submitted to. */
+    @Query(value = "select distinct on (question_id) question_id as \"questionId\", id as \"submissionId\", "
+            + "status as \"status\", created_at as \"createdAt\" "
+            + "from submissions "
+            + "where user_id = :userId and type = 'SUBMISSION' "
+            + "order by question_id, created_at desc, id desc", nativeQuery = true)
+    List<LatestVerdictView> findLatestVerdicts(@Param("userId") Long userId);
+
+    /**
+     * Newest-first page of submissions with an id below {@code beforeId}
+     * (keyset pagination); every filter is optional.
+     */
+    @Query("select s.id as id, u.id as userId, u.username as username, q.id as questionId, "
+            + "q.title as questionTitle, s.language as language, s.type as type, s.status as status, "
+            + "s.createdAt as createdAt "
+            + "from Submission s left join s.user u left join s.question q "
+            + "where (:beforeId is null or s.id < :beforeId) "
+            + "and (:questionId is null or q.id = :questionId) "
+            + "and (:userId is null or u.id = :userId) "
+            + "and (:status is null or s.status = :status) "
+            + "and (:from is null or s.createdAt >= :from) "
+            + "and (:to is null or s.createdAt < :to) "
+            + "order by s.id desc")
+    List<AdminSubmissionView> findForAdmin(@Param("beforeId") Long beforeId,
+            @Param("questionId") Long questionId,
+            @Param("userId") Long userId,
+            @Param("status") String status,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            Pageable page);
 }
@@ -0,0 +1,20 @@
+package com.example.DAO;
+
+/** How often one test case of a question fails, aggregated over test_results. */
+public interface TestCaseFailureStats {
+    Long getQuestionId();
+
+    Integer getCaseIndex();
+
+    String getCaseType();
+
+    Long getAttempts();
+
+    Long getFailures();
+
+    Double getFailureRate();
+
+    Double getAvgCpuTimeMs();
+
+    Long getMaxMemoryKb();
+}
@@ -0,0 +1,29 @@
+package com.example.DAO;
+
+import com.example.bean.TestResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TestResultRepository extends JpaRepository<TestResult, Long> {
+
+    String FAILURE_STATS = "SELECT question_id AS \"questionId\", case_index AS \"caseIndex\", case_type AS \"caseType\", "
+            + "COUNT(*) AS \"attempts\", "
+            + "SUM(CASE WHEN verdict <> 'PASSED' THEN 1 ELSE 0 END) AS \"failures\", "
+            + "AVG(CASE WHEN verdict <> 'PASSED' THEN 1.0 ELSE 0.0 END) AS \"failureRate\", "
+            + "AVG(cpu_time_ms) AS \"avgCpuTimeMs\", MAX(memory_kb) AS \"maxMemoryKb\" "
+            + "FROM test_results ";
+
+    @Query(value = FAILURE_STATS + "WHERE question_id = :questionId "
+            + "GROUP BY question_id, case_index, case_type ORDER BY case_index", nativeQuery = true)
+    List<TestCaseFailureStats> failureStatsForQuestion(@Param("questionId") Long questionId);
+
+    @Query(value = FAILURE_STATS + "GROUP BY question_id, case_index, case_type "
+            + "HAVING COUNT(*) >= :minAttempts ORDER BY \"failureRate\" DESC, \"attempts\" DESC LIMIT :limit",
+            nativeQuery = true)
+    List<TestCaseFailureStats> mostFailedCases(@Param("minAttempts") long minAttempts, @Param("limit") int limit);
+}
@@ -31,6 +31,9 @@ public class Question {
     @Column(name = "memory_limit")
     private Integer memoryLimit = 128;
 
+    @Column(name = "parallel_tests")
+    private Boolean parallelTests = false;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt = LocalDateTime.now();
 
@@ -67,6 +70,14 @@ public class Question {
         this.starterCode = starterCode;
     }
 
+    public Boolean getParallelTests() {
+        return parallelTests;
+    }
+
+    public void setParallelTests(Boolean parallelTests) {
+        this.parallelTests = parallelTests;
+    }
+
     public String getVisibleTestCasesJson() {
         return visibleTestCasesJson;
     }
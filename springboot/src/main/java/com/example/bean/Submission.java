@@ -4,7 +4,13 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "submissions")
+@Table(name = "submissions", indexes = {
+        // Keyset pages of the admin list filtered by question or user
+        @Index(name = "idx_submissions_question_id", columnList = "question_id, id"),
+        @Index(name = "idx_submissions_user_id", columnList = "user_id, id"),
+        // Student history pages and latest verdict per question
+        @Index(name = "idx_submissions_user_created_at", columnList = "user_id, created_at DESC")
+})
 public class Submission {
 
     @Id
@@ -26,7 +32,7 @@ public class Submission {
     private String language;
 
     @Column(nullable = false)
-    private String status = "QUEUED"; // QUEUED, PROCESSING, ACCEPTED, WRONG_ANSWER, ERROR
+    private String status = "QUEUED"; // QUEUED, PROCESSING, ACCEPTED, WRONG_ANSWER, COMPILATION_ERROR, ERROR, SUPERSEDED
 
     @Column(name = "result_metadata", columnDefinition = "TEXT")
     private String resultMetadata; // JSON string
@@ -37,6 +43,9 @@ public class Submission {
     @Column(name = "created_at")
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    @Column(name = "version")
+    private Long version = 0L; // bumped by every status/result update from the judge
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -109,4 +118,12 @@ public class Submission {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
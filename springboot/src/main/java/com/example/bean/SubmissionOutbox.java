@@ -0,0 +1,60 @@
+package com.example.bean;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A submission task waiting to be published to the judge queue. Written in
+ * the same transaction as its submission and deleted once the relay has
+ * pushed it to Redis.
+ */
+@Entity
+@Table(name = "submission_outbox")
+public class SubmissionOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "submission_id", nullable = false)
+    private Long submissionId;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload; // SubmissionTask as JSON
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getSubmissionId() {
+        return submissionId;
+    }
+
+    public void setSubmissionId(Long submissionId) {
+        this.submissionId = submissionId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bean;
+
+import jakarta.persistence.*;
+
+/**
+ * Outcome of one test case of a judged submission, written by the
+ * compiler-service. Cases after the first failure are not run and have no row.
+ */
+@Entity
+@Table(name = "test_results", indexes = {
+        @Index(name = "idx_test_results_submission", columnList = "submission_id"),
+        @Index(name = "idx_test_results_question_case", columnList = "question_id, case_index")
+})
+public class TestResult {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "submission_id", nullable = false)
+    private Long submissionId;
+
+    @Column(name = "question_id", nullable = false)
+    private Long questionId;
+
+    @Column(name = "case_index", nullable = false)
+    private Integer caseIndex; // 1-based, visible cases first
+
+    @Column(name = "case_type", nullable = false)
+    private String caseType; // visible, hidden
+
+    @Column(nullable = false)
+    private String verdict; // PASSED, WRONG_ANSWER, TIMEOUT, RUNTIME_ERROR, ...
+
+    @Column(name = "cpu_time_ms")
+    private Long cpuTimeMs;
+
+    @Column(name = "wall_time_ms")
+    private Long wallTimeMs;
+
+    @Column(name = "memory_kb")
+    private Long memoryKb;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getSubmissionId() {
+        return submissionId;
+    }
+
+    public void setSubmissionId(Long submissionId) {
+        this.submissionId = submissionId;
+    }
+
+    public Long getQuestionId() {
+        return questionId;
+    }
+
+    public void setQuestionId(Long questionId) {
+        this.questionId = questionId;
+    }
+
+    public Integer getCaseIndex() {
+        return caseIndex;
+    }
+
+    public void setCaseIndex(Integer caseIndex) {
+        this.caseIndex = caseIndex;
+    }
+
+    public String getCaseType() {
+        return caseType;
+    }
+
+    public void setCaseType(String caseType) {
+        this.caseType = caseType;
+    }
+
+    public String getVerdict() {
+        return verdict;
+    }
+
+    public void setVerdict(String verdict) {
+        this.verdict = verdict;
+    }
+
+    public Long getCpuTimeMs() {
+        return cpuTimeMs;
+    }
+
+    public void setCpuTimeMs(Long cpuTimeMs) {
+        this.cpuTimeMs = cpuTimeMs;
+    }
+
+    public Long getWallTimeMs() {
+        return wallTimeMs;
+    }
+
+    public void setWallTimeMs(Long wallTimeMs) {
+        this.wallTimeMs = wallTimeMs;
+    }
+
+    public Long getMemoryKb() {
+        return memoryKb;
+    }
+
+    public void setMemoryKb(Long memoryKb) {
+        this.memoryKb = memoryKb;
+    }
+}
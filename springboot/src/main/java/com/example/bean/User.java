@@ -15,7 +15,8 @@ public class User {
     private String username;
 
     @Column(nullable = false)
-    private String password;
+    @com.fasterxml.jackson.annotation.JsonProperty(access = com.fasterxml.jackson.annotation.JsonProperty.Access.WRITE_ONLY)
+    private String password; // never serialized: users are embedded in every submission response
 
     @Column(unique = true, nullable = false)
     private String email;
@@ -38,11 +38,15 @@ public class RedisConfig {
     @Bean
     public org.springframework.data.redis.listener.RedisMessageListenerContainer container(
             RedisConnectionFactory connectionFactory,
-            com.example.service.SubmissionUpdateListener listener) {
+            com.example.service.SubmissionUpdateListener listener,
+            com.example.service.QuestionCache questionCache) {
         org.springframework.data.redis.listener.RedisMessageListenerContainer container = new org.springframework.data.redis.listener.RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
         container.addMessageListener(listener,
                 new org.springframework.data.redis.listener.PatternTopic("submission_updates"));
+        container.addMessageListener(questionCache,
+                new org.springframework.data.redis.listener.ChannelTopic(
+                        com.example.service.QuestionCache.QUESTION_UPDATES_CHANNEL));
         return container;
     }
 }
@@ -1,17 +1,24 @@
 package com.example.controller;
 
+import com.example.DAO.AdminSubmissionView;
 import com.example.DAO.SubmissionRepository;
 import com.example.DAO.UserRepository;
 import com.example.DAO.QuestionRepository;
 import com.example.DAO.TestCaseRepository;
+import com.example.DAO.TestCaseFailureStats;
+import com.example.DAO.TestResultRepository;
 import com.example.bean.Submission;
 import com.example.bean.User;
 import com.example.bean.Question;
 import com.example.bean.TestCase;
+import com.example.service.QuestionCache;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +32,8 @@ public class AdminController {
     private final SubmissionRepository submissionRepository;
     private final QuestionRepository questionRepository;
     private final TestCaseRepository testCaseRepository;
+    private final TestResultRepository testResultRepository;
+    private final QuestionCache questionCache;
     private final PasswordEncoder passwordEncoder;
     private final org.springframework.web.client.RestTemplate restTemplate = new org.springframework.web.client.RestTemplate();
 
@@ -32,11 +41,15 @@ public class AdminController {
             SubmissionRepository submissionRepository,
             QuestionRepository questionRepository,
             TestCaseRepository testCaseRepository,
+            TestResultRepository testResultRepository,
+            QuestionCache questionCache,
             PasswordEncoder passwordEncoder) {
         this.userRepository = userRepository;
         this.submissionRepository = submissionRepository;
         this.questionRepository = questionRepository;
         this.testCaseRepository = testCaseRepository;
+        this.testResultRepository = testResultRepository;
+        this.questionCache = questionCache;
         this.passwordEncoder = passwordEncoder;
     }
 
@@ -86,6 +99,13 @@ public class AdminController {
             question.setMemoryLimit(Integer.parseInt((String) memoryLimit));
         }
 
+        Object parallelTests = request.get("parallelTests");
+        if (parallelTests instanceof Boolean) {
+            question.setParallelTests((Boolean) parallelTests);
+        } else if (parallelTests instanceof String) {
+            question.setParallelTests(Boolean.parseBoolean((String) parallelTests));
+        }
+
         question.setVisibleTestCasesJson((String) request.get("visibleTestCasesJson"));
 
         Question saved = questionRepository.save(question);
@@ -95,6 +115,7 @@ public class AdminController {
             List<Map<String, String>> hiddenCases = (List<Map<String, String>>) request.get("hiddenTestCases");
             saveHiddenTestCases(saved.getId(), hiddenCases);
         }
+        questionCache.questionChanged(saved.getId());
 
         return ResponseEntity.ok(saved);
     }
@@ -112,12 +133,57 @@ public class AdminController {
     public ResponseEntity<TestCase> addTestCase(@PathVariable Long id, @RequestBody TestCase testCase) {
         var question = questionRepository.findById(id).orElseThrow();
         testCase.setQuestion(question);
-        return ResponseEntity.ok(testCaseRepository.save(testCase));
+        TestCase saved = testCaseRepository.save(testCase);
+        questionCache.questionChanged(id);
+        return ResponseEntity.ok(saved);
     }
 
+    /**
+     * Newest-first submissions without code, optionally filtered. Pass the
+     * returned {@code nextCursor} as {@code cursor} to get the next page; it is
+     * null on the last page. Full details come from {@code /submissions/{id}}.
+     */
     @GetMapping("/submissions")
-    public ResponseEntity<List<Submission>> getAllSubmissions() {
-        return ResponseEntity.ok(submissionRepository.findAll());
+    public ResponseEntity<Map<String, Object>> getSubmissions(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Long questionId,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "50") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, 200));
+        // One extra row tells whether there is a next page
+        List<AdminSubmissionView> rows = submissionRepository.findForAdmin(cursor, questionId, userId, status,
+                from, to, PageRequest.of(0, pageSize + 1));
+        boolean hasMore = rows.size() > pageSize;
+        List<AdminSubmissionView> items = hasMore ? rows.subList(0, pageSize) : rows;
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", items);
+        response.put("nextCursor", hasMore ? items.get(items.size() - 1).getId() : null);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/submissions/{id}")
+    public ResponseEntity<Submission> getSubmission(@PathVariable Long id) {
+        return submissionRepository.findById(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /** Per-case attempts and failure rate of a question, in case order. */
+    @GetMapping("/questions/{id}/test-case-stats")
+    public ResponseEntity<List<TestCaseFailureStats>> getTestCaseStats(@PathVariable Long id) {
+        return ResponseEntity.ok(testResultRepository.failureStatsForQuestion(id));
+    }
+
+    /** The cases that fail most often across all questions, ignoring cases with few attempts. */
+    @GetMapping("/test-case-stats")
+    public ResponseEntity<List<TestCaseFailureStats>> getMostFailedTestCases(
+            @RequestParam(defaultValue = "10") long minAttempts,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(testResultRepository.mostFailedCases(minAttempts, Math.min(limit, 500)));
     }
 
     @GetMapping("/sessions")
@@ -1,35 +1,64 @@
 package com.example.controller;
 
+import com.example.DAO.LatestVerdictView;
+import com.example.DAO.SubmissionHistoryView;
 import com.example.DAO.UserRepository;
 import com.example.bean.Submission;
 import com.example.bean.User;
 import com.example.dto.SubmissionRequest;
 import com.example.service.QuestionService;
+import com.example.service.SubmissionRateLimiter;
 import com.example.service.SubmissionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/submissions")
 public class SubmissionController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final SubmissionService submissionService;
     private final QuestionService questionService;
     private final UserRepository userRepository;
+    private final SubmissionRateLimiter rateLimiter;
+
+    @Value("${submission.queue.shed-retry-after-seconds:30}")
+    private long shedRetryAfterSeconds;
 
     public SubmissionController(SubmissionService submissionService, QuestionService questionService,
-            UserRepository userRepository) {
+            UserRepository userRepository, SubmissionRateLimiter rateLimiter) {
         this.submissionService = submissionService;
         this.questionService = questionService;
         this.userRepository = userRepository;
+        this.rateLimiter = rateLimiter;
     }
 
     @PostMapping
     public ResponseEntity<?> submitCode(Authentication auth, @RequestBody SubmissionRequest req) {
         User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+
+        // Checked before taking a token, so shed requests do not use up the user's budget
+        if (submissionService.isBacklogged(req.type())) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(shedRetryAfterSeconds))
+                    .body("The judge is busy, please try again shortly");
+        }
+        long retryAfter = rateLimiter.tryAcquire(user, req.type());
+        if (retryAfter > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body("Too many submissions, please wait " + retryAfter + " seconds");
+        }
+
         var question = questionService.getQuestionById(req.questionId())
                 .orElseThrow(() -> new RuntimeException("Question not found"));
 
@@ -45,10 +74,27 @@ public class SubmissionController {
         return ResponseEntity.ok(saved);
     }
 
+    /** Newest-first page of the caller's submissions; fetch one submission by id for code and results. */
     @GetMapping
-    public List<Submission> getMySubmissions(Authentication auth) {
+    public Map<String, Object> getMySubmissions(Authentication auth,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<SubmissionHistoryView> rows = submissionService.getUserHistory(user, Math.max(0, page), pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", hasMore ? rows.subList(0, pageSize) : rows);
+        body.put("page", Math.max(0, page));
+        body.put("hasMore", hasMore);
+        return body;
+    }
+
+    @GetMapping("/latest")
+    public List<LatestVerdictView> getLatestVerdicts(Authentication auth) {
         User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-        return submissionService.getUserSubmissions(user);
+        return submissionService.getLatestVerdicts(user);
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,37 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Version 2 queue format of a {@link SubmissionTask}: short field names and
+ * no source code. The worker reads the code from the submission row, which it
+ * loads anyway when it starts. Payloads without {@code v} are full
+ * {@link SubmissionTask} JSON (version 1).
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CompactSubmissionTask(
+                @JsonProperty("v") int version,
+                @JsonProperty("s") Long submissionId,
+                @JsonProperty("q") Long questionId,
+                @JsonProperty("u") Long userId,
+                @JsonProperty("j") String jobType,
+                @JsonProperty("l") String language,
+                @JsonProperty("t") Integer timeLimit,
+                @JsonProperty("m") Integer memoryLimit,
+                @JsonProperty("i") String customInput) {
+
+    public static final int VERSION = 2;
+
+    public static CompactSubmissionTask of(SubmissionTask task) {
+        return new CompactSubmissionTask(VERSION, task.submissionId(), task.questionId(), task.userId(),
+                task.jobType(), task.language(), task.timeLimit(), task.memoryLimit(),
+                task.customInput());
+    }
+
+    /** The task without its code; the worker fills it in from the submission. */
+    public SubmissionTask toTask() {
+        return new SubmissionTask(submissionId, questionId, null, language, timeLimit, memoryLimit, jobType,
+                customInput, userId);
+    }
+}
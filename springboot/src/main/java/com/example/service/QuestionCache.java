@@ -0,0 +1,138 @@
+package com.example.service;
+
+import com.example.DAO.QuestionRepository;
+import com.example.DAO.TestCaseRepository;
+import com.example.bean.Question;
+import com.example.bean.TestCase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Questions and their visible test cases, held in memory so question pages
+ * and submissions do not go to the database every time. Entries are evicted
+ * in LRU order beyond {@code question.cache.max-entries} and expire after
+ * {@code question.cache.ttl-ms}. {@link #questionChanged} drops a question
+ * here and publishes its id on {@code question_updates}, which drops it on
+ * every other API node and in the compiler-service.
+ */
+@Service
+public class QuestionCache implements MessageListener {
+
+    public static final String QUESTION_UPDATES_CHANNEL = "question_updates";
+
+    @Value("${question.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${question.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${question.cache.ttl-ms:600000}")
+    private long ttlMs;
+
+    private record Entry(Question question, List<TestCase> visibleTestCases, long expiresAt) {
+    }
+
+    private final QuestionRepository questionRepository;
+    private final TestCaseRepository testCaseRepository;
+    private final StringRedisTemplate redisTemplate;
+
+    // Access-ordered so iteration starts at the least recently used question
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Bumped by every invalidation so a load that raced with one is not cached
+    private long generation;
+
+    public QuestionCache(QuestionRepository questionRepository, TestCaseRepository testCaseRepository,
+            StringRedisTemplate redisTemplate) {
+        this.questionRepository = questionRepository;
+        this.testCaseRepository = testCaseRepository;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /** The question, or null if it does not exist. */
+    public Question question(Long questionId) {
+        Entry entry = entry(questionId);
+        return entry != null ? entry.question() : null;
+    }
+
+    /** Visible test cases of the question, or null if it does not exist. */
+    public List<TestCase> visibleTestCases(Long questionId) {
+        Entry entry = entry(questionId);
+        return entry != null ? entry.visibleTestCases() : null;
+    }
+
+    /** Drops the question on this node and tells the other nodes and the judge to do the same. */
+    public void questionChanged(Long questionId) {
+        invalidate(questionId);
+        try {
+            redisTemplate.convertAndSend(QUESTION_UPDATES_CHANNEL, String.valueOf(questionId));
+        } catch (Exception e) {
+            // Other caches still catch up when their entry expires
+            System.err.println("QuestionCache: failed to publish update for question " + questionId + ": "
+                    + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            invalidate(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8).trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("QuestionCache: ignoring malformed update: " + e.getMessage());
+        }
+    }
+
+    public synchronized void invalidate(Long questionId) {
+        generation++;
+        entries.remove(questionId);
+    }
+
+    private Entry entry(Long questionId) {
+        if (!enabled) {
+            return load(questionId);
+        }
+        long startedGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(questionId);
+            if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+                return entry;
+            }
+            if (entry != null) {
+                entries.remove(questionId);
+            }
+            startedGeneration = generation;
+        }
+        Entry loaded = load(questionId);
+        if (loaded == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (generation == startedGeneration) {
+                entries.put(questionId, loaded);
+                Iterator<Entry> it = entries.values().iterator();
+                while (entries.size() > maxEntries && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private Entry load(Long questionId) {
+        Question question = questionRepository.findById(questionId).orElse(null);
+        if (question == null) {
+            return null;
+        }
+        List<TestCase> visible = Collections.unmodifiableList(testCaseRepository.findByQuestionAndVisibleTrue(question));
+        return new Entry(question, visible, System.currentTimeMillis() + ttlMs);
+    }
+}
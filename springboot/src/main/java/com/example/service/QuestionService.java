@@ -1,7 +1,6 @@
 package com.example.service;
 
 import com.example.DAO.QuestionRepository;
-import com.example.DAO.TestCaseRepository;
 import com.example.bean.Question;
 import com.example.bean.TestCase;
 import org.springframework.stereotype.Service;
@@ -13,11 +12,11 @@ import java.util.Optional;
 public class QuestionService {
 
     private final QuestionRepository questionRepository;
-    private final TestCaseRepository testCaseRepository;
+    private final QuestionCache questionCache;
 
-    public QuestionService(QuestionRepository questionRepository, TestCaseRepository testCaseRepository) {
+    public QuestionService(QuestionRepository questionRepository, QuestionCache questionCache) {
         this.questionRepository = questionRepository;
-        this.testCaseRepository = testCaseRepository;
+        this.questionCache = questionCache;
     }
 
     public List<Question> getAllQuestions() {
@@ -25,16 +24,20 @@ public class QuestionService {
     }
 
     public Optional<Question> getQuestionById(Long id) {
-        return questionRepository.findById(id);
+        return Optional.ofNullable(questionCache.question(id));
     }
 
     public List<TestCase> getVisibleTestCases(Long questionId) {
-        Question question = questionRepository.findById(questionId)
-                .orElseThrow(() -> new RuntimeException("Question not found"));
-        return testCaseRepository.findByQuestionAndVisibleTrue(question);
+        List<TestCase> testCases = questionCache.visibleTestCases(questionId);
+        if (testCases == null) {
+            throw new RuntimeException("Question not found");
+        }
+        return testCases;
     }
 
     public Question saveQuestion(Question question) {
-        return questionRepository.save(question);
+        Question saved = questionRepository.save(question);
+        questionCache.questionChanged(saved.getId());
+        return saved;
     }
 }
@@ -0,0 +1,205 @@
+package com.example.service;
+
+import com.example.DAO.SubmissionOutboxRepository;
+import com.example.bean.SubmissionOutbox;
+import com.example.dto.CompactSubmissionTask;
+import com.example.dto.SubmissionTask;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes submission tasks from the {@code submission_outbox} table to the
+ * judge queue. Each batch of rows is locked, pushed to Redis in one pipeline
+ * and deleted in the same transaction, so a task is published at least once
+ * even if the node dies at any point. The relay is woken right after a
+ * submission commits and otherwise polls every
+ * {@code submission.outbox.poll-interval-ms}.
+ */
+@Service
+public class SubmissionOutboxRelay {
+
+    // Consumed by the compiler-service "compiler-workers" consumer group; Run clicks get their own lane
+    static final String GRADING_STREAM = "submission_stream";
+    static final String INTERACTIVE_STREAM = "submission_stream:interactive";
+    // Queues the task on the user's own list and puts the user in the stream's
+    // round-robin rotation; compiler-service promotes tasks from there into the stream.
+    // KEYS: rotation list, active-user set, user queue, waiting-task count; ARGV: user id, "<enqueuedAtMillis>|<taskJson>"
+    private static final byte[] ENQUEUE = """
+            redis.call('RPUSH', KEYS[3], ARGV[2])
+            redis.call('INCR', KEYS[4])
+            if redis.call('SADD', KEYS[2], ARGV[1]) == 1 then
+                redis.call('RPUSH', KEYS[1], ARGV[1])
+            end
+            return 1
+            """.getBytes(StandardCharsets.UTF_8);
+    // Latest interactive run per user and question; older queued runs are skipped by compiler-service
+    private static final String LATEST_RUN_PREFIX = "submission_stream:interactive:latest:";
+    // Tells compiler-service to cancel older runs of the same user and question that already started
+    private static final String SUPERSEDED_CHANNEL = "submission_superseded";
+    private static final Duration LATEST_RUN_TTL = Duration.ofHours(6);
+
+    @Value("${submission.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${submission.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    // "compact" (version 2, no source code) or "full" while workers that only read full tasks are still running
+    @Value("${submission.task.format:compact}")
+    private String taskFormat;
+
+    private final SubmissionOutboxRepository outboxRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Released after each committed submission; several releases are drained into one pass
+    private final Semaphore pending = new Semaphore(0);
+    private Thread relayThread;
+    private volatile boolean running = true;
+
+    public SubmissionOutboxRelay(SubmissionOutboxRepository outboxRepository, StringRedisTemplate redisTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.outboxRepository = outboxRepository;
+        this.redisTemplate = redisTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() {
+        relayThread = new Thread(() -> {
+            while (running) {
+                try {
+                    pending.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    pending.drainPermits();
+                    // A full batch means more rows are probably waiting
+                    int relayed;
+                    do {
+                        relayed = relayBatch();
+                    } while (running && relayed == batchSize);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    if (running) {
+                        System.err.println("SubmissionOutboxRelay: relay failed: " + e.getMessage());
+                        try {
+                            Thread.sleep(1000);
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                }
+            }
+        }, "SubmissionOutboxRelay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (relayThread != null) {
+            relayThread.interrupt();
+        }
+    }
+
+    /** Asks the relay to publish now instead of at its next poll. */
+    public void wakeUp() {
+        pending.release();
+    }
+
+    /** Publishes and deletes up to one batch of outbox rows; returns how many were taken. */
+    private int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<SubmissionOutbox> batch = outboxRepository.lockBatch(batchSize);
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            publish(batch);
+            outboxRepository.deleteAllInBatch(batch);
+            return batch.size();
+        });
+        return relayed != null ? relayed : 0;
+    }
+
+    /** Pushes the batch to Redis in one pipeline; any failure rolls the batch back for the next pass. */
+    private void publish(List<SubmissionOutbox> batch) {
+        List<SubmissionTask> tasks = new ArrayList<>();
+        for (SubmissionOutbox row : batch) {
+            try {
+                tasks.add(objectMapper.readValue(row.getPayload(), SubmissionTask.class));
+            } catch (Exception e) {
+                // Can never be published; dropping it keeps the rest of the outbox moving
+                System.err.println("SubmissionOutboxRelay: dropping malformed task for submission "
+                        + row.getSubmissionId() + ": " + e.getMessage());
+            }
+        }
+        long enqueuedAt = System.currentTimeMillis();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (SubmissionTask task : tasks) {
+                boolean interactive = "RUN_CUSTOM".equals(task.jobType()) || "RUN_VISIBLE".equals(task.jobType());
+                String stream = interactive ? INTERACTIVE_STREAM : GRADING_STREAM;
+                String user = task.userId() != null ? String.valueOf(task.userId()) : "anonymous";
+                if (interactive && task.userId() != null) {
+                    supersedeEarlierRuns(connection, task);
+                }
+                connection.scriptingCommands().eval(ENQUEUE, ReturnType.INTEGER, 4,
+                        bytes(stream + ":users"), bytes(stream + ":active"), bytes(stream + ":user:" + user),
+                        bytes(stream + ":depth"),
+                        bytes(user), bytes(enqueuedAt + "|" + payload(task)));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Records this run as the latest one of the user on the question, so any
+     * earlier run still queued is skipped, and asks the workers to cancel an
+     * earlier run that is already executing.
+     */
+    private void supersedeEarlierRuns(RedisConnection connection, SubmissionTask task) {
+        connection.stringCommands().set(bytes(LATEST_RUN_PREFIX + task.userId() + ":" + task.questionId()),
+                bytes(String.valueOf(task.submissionId())), Expiration.from(LATEST_RUN_TTL),
+                RedisStringCommands.SetOption.upsert());
+        connection.publish(bytes(SUPERSEDED_CHANNEL), bytes(json(Map.of(
+                "userId", task.userId(),
+                "questionId", task.questionId(),
+                "submissionId", task.submissionId()))));
+    }
+
+    private String payload(SubmissionTask task) {
+        return json("full".equals(taskFormat) ? task : CompactSubmissionTask.of(task));
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not serialize " + value, e);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
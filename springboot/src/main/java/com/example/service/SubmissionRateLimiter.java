@@ -0,0 +1,84 @@
+package com.example.service;
+
+import com.example.bean.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Per-user token buckets on the submission endpoint, kept in Redis so every
+ * API node draws from the same bucket. Runs and full submissions have
+ * separate buckets. Limits are looked up as
+ * {@code submission.rate-limit.<role>.<run|submit>.capacity} and
+ * {@code .refill-per-minute}, falling back to the {@code default} role.
+ */
+@Service
+public class SubmissionRateLimiter {
+
+    private static final String KEY_PREFIX = "rate_limit:";
+
+    // KEYS: bucket hash; ARGV: capacity, tokens refilled per minute.
+    // Returns 0 when a token was taken, else milliseconds until one is available.
+    // The Redis clock is used so API nodes with skewed clocks agree.
+    private static final DefaultRedisScript<Long> TAKE = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local refillPerMs = tonumber(ARGV[2]) / 60000
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(bucket[1]) or capacity
+            local ts = tonumber(bucket[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * refillPerMs)
+            local retryAfterMs = 0
+            if tokens >= 1 then
+                tokens = tokens - 1
+            else
+                retryAfterMs = math.ceil((1 - tokens) / refillPerMs)
+            end
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / refillPerMs) + 1000)
+            return retryAfterMs
+            """, Long.class);
+
+    @Value("${submission.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    private final StringRedisTemplate redisTemplate;
+    private final Environment environment;
+
+    public SubmissionRateLimiter(StringRedisTemplate redisTemplate, Environment environment) {
+        this.redisTemplate = redisTemplate;
+        this.environment = environment;
+    }
+
+    /** Takes a token for the user; returns 0 if allowed, else the seconds to wait before retrying. */
+    public long tryAcquire(User user, String jobType) {
+        if (!enabled) {
+            return 0;
+        }
+        String kind = "RUN_CUSTOM".equals(jobType) || "RUN_VISIBLE".equals(jobType) ? "run" : "submit";
+        String role = user.getRole() != null ? user.getRole().toLowerCase() : "default";
+        int capacity = limit(role, kind, "capacity", 10);
+        int refillPerMinute = Math.max(1, limit(role, kind, "refill-per-minute", 10));
+
+        Long retryAfterMs = redisTemplate.execute(TAKE, List.of(KEY_PREFIX + kind + ":" + user.getId()),
+                String.valueOf(capacity), String.valueOf(refillPerMinute));
+        if (retryAfterMs == null || retryAfterMs <= 0) {
+            return 0;
+        }
+        return (retryAfterMs + 999) / 1000;
+    }
+
+    private int limit(String role, String kind, String name, int fallback) {
+        Integer value = environment.getProperty(
+                "submission.rate-limit." + role + "." + kind + "." + name, Integer.class);
+        if (value == null) {
+            value = environment.getProperty("submission.rate-limit.default." + kind + "." + name, Integer.class);
+        }
+        return value != null ? value : fallback;
+    }
+}
@@ -1,11 +1,22 @@
 package com.example.service;
 
+import com.example.DAO.LatestVerdictView;
+import com.example.DAO.SubmissionHistoryView;
+import com.example.DAO.SubmissionOutboxRepository;
 import com.example.DAO.SubmissionRepository;
 import com.example.bean.Submission;
+import com.example.bean.SubmissionOutbox;
 import com.example.bean.User;
 import com.example.dto.SubmissionTask;
-import org.springframework.data.redis.core.RedisTemplate;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 
@@ -13,37 +24,88 @@ import java.util.List;
 public class SubmissionService {
 
     private final SubmissionRepository submissionRepository;
-    private final RedisTemplate<String, Object> redisTemplate;
-    private static final String QUEUE_NAME = "submission_queue";
+    private final SubmissionOutboxRepository outboxRepository;
+    private final SubmissionOutboxRelay outboxRelay;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public SubmissionService(SubmissionRepository submissionRepository,
-            org.springframework.data.redis.core.RedisTemplate<String, Object> redisTemplate) {
+    @Value("${submission.queue.shed-interactive-at:500}")
+    private long shedInteractiveAt;
+
+    @Value("${submission.queue.shed-all-at:2000}")
+    private long shedAllAt;
+
+    public SubmissionService(SubmissionRepository submissionRepository, SubmissionOutboxRepository outboxRepository,
+            SubmissionOutboxRelay outboxRelay, StringRedisTemplate redisTemplate) {
         this.submissionRepository = submissionRepository;
+        this.outboxRepository = outboxRepository;
+        this.outboxRelay = outboxRelay;
         this.redisTemplate = redisTemplate;
     }
 
+    /**
+     * Saves the submission together with its queue task in the outbox, in one
+     * transaction; {@link SubmissionOutboxRelay} publishes the task once it
+     * has committed.
+     */
+    @Transactional
     public Submission saveSubmission(Submission submission, String type, String customInput) {
         submission.setType(type);
         Submission saved = submissionRepository.save(submission);
-        enqueueSubmission(saved, customInput);
+        SubmissionTask task = new SubmissionTask(
+                saved.getId(),
+                saved.getQuestion().getId(),
+                saved.getCode(),
+                saved.getLanguage(),
+                saved.getQuestion().getTimeLimit(),
+                saved.getQuestion().getMemoryLimit(),
+                saved.getType(),
+                customInput,
+                saved.getUser() != null ? saved.getUser().getId() : null);
+
+        SubmissionOutbox outbox = new SubmissionOutbox();
+        outbox.setSubmissionId(saved.getId());
+        try {
+            outbox.setPayload(objectMapper.writeValueAsString(task));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize submission task " + saved.getId(), e);
+        }
+        outboxRepository.save(outbox);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxRelay.wakeUp();
+            }
+        });
         return saved;
     }
 
-    private void enqueueSubmission(Submission submission, String customInput) {
-        com.example.dto.SubmissionTask task = new com.example.dto.SubmissionTask(
-                submission.getId(),
-                submission.getQuestion().getId(),
-                submission.getCode(),
-                submission.getLanguage(),
-                submission.getQuestion().getTimeLimit(),
-                submission.getQuestion().getMemoryLimit(),
-                submission.getType(),
-                customInput);
-        redisTemplate.opsForList().leftPush(QUEUE_NAME, task);
+    /**
+     * Whether the judge backlog is too deep to accept a task of this type.
+     * Interactive runs are shed first, at the lower threshold; full
+     * submissions only when the backlog passes {@code shed-all-at}.
+     */
+    public boolean isBacklogged(String jobType) {
+        long backlog = depth(SubmissionOutboxRelay.GRADING_STREAM) + depth(SubmissionOutboxRelay.INTERACTIVE_STREAM);
+        boolean interactive = "RUN_CUSTOM".equals(jobType) || "RUN_VISIBLE".equals(jobType);
+        return backlog >= (interactive ? shedInteractiveAt : shedAllAt);
+    }
+
+    /** Tasks waiting in the per-user queues in front of a stream. */
+    private long depth(String stream) {
+        String depth = redisTemplate.opsForValue().get(stream + ":depth");
+        return depth != null ? Long.parseLong(depth) : 0;
+    }
+
+    /** One newest-first page of the user's history, without code or result metadata. */
+    public List<SubmissionHistoryView> getUserHistory(User user, int page, int size) {
+        return submissionRepository.findHistory(user.getId(), PageRequest.of(page, size));
     }
 
-    public List<Submission> getUserSubmissions(User user) {
-        return submissionRepository.findByUserOrderByCreatedAtDesc(user);
+    /** The user's latest graded verdict on each question they have submitted to. */
+    public List<LatestVerdictView> getLatestVerdicts(User user) {
+        return submissionRepository.findLatestVerdicts(user.getId());
     }
 
     public Submission getSubmissionById(Long id) {
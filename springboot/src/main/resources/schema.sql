@@ -1,5 +1,7 @@
 -- Database Schema for IITJ Coder
 
+drop table if exists public.submission_outbox;
+drop table if exists public.test_results;
 drop table if exists public.submissions;
 drop table if exists public.test_cases;
 drop table if exists public.questions;
@@ -22,6 +24,7 @@ CREATE TABLE questions (
     difficulty VARCHAR(20),
     time_limit INTEGER DEFAULT 2000,
     memory_limit INTEGER DEFAULT 128,
+    parallel_tests BOOLEAN DEFAULT FALSE, -- run this question's test cases concurrently on the judge
     starter_code TEXT,
     visible_test_cases_json TEXT, -- [{ "input": "...", "output": "..." }]
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
@@ -43,9 +46,36 @@ CREATE TABLE submissions (
     question_id INTEGER REFERENCES questions(id),
     code TEXT NOT NULL,
     language VARCHAR(20) NOT NULL,
-    status VARCHAR(20) DEFAULT 'QUEUED', -- 'QUEUED', 'PROCESSING', 'ACCEPTED', 'WRONG_ANSWER', 'ERROR'
+    status VARCHAR(20) DEFAULT 'QUEUED', -- 'QUEUED', 'PROCESSING', 'ACCEPTED', 'WRONG_ANSWER', 'COMPILATION_ERROR', 'ERROR'
     type VARCHAR(20) DEFAULT 'SUBMISSION', -- 'RUN_VISIBLE', 'RUN_CUSTOM', 'SUBMISSION'
     result_metadata JSONB, -- detailed results per test case
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    version BIGINT DEFAULT 0 -- bumped by every status/result update from the judge
+);
+CREATE INDEX idx_submissions_question_id ON submissions (question_id, id);
+CREATE INDEX idx_submissions_user_id ON submissions (user_id, id);
+CREATE INDEX idx_submissions_user_created_at ON submissions (user_id, created_at DESC);
+
+-- Per-test-case outcomes of judged submissions (cases after the first failure are not run)
+CREATE TABLE test_results (
+    id BIGSERIAL PRIMARY KEY,
+    submission_id INTEGER NOT NULL REFERENCES submissions(id) ON DELETE CASCADE,
+    question_id INTEGER NOT NULL REFERENCES questions(id) ON DELETE CASCADE,
+    case_index INTEGER NOT NULL, -- 1-based, visible cases first
+    case_type VARCHAR(10) NOT NULL, -- 'visible', 'hidden'
+    verdict VARCHAR(30) NOT NULL, -- 'PASSED', 'WRONG_ANSWER', 'TIMEOUT', ...
+    cpu_time_ms BIGINT,
+    wall_time_ms BIGINT,
+    memory_kb BIGINT
+);
+CREATE INDEX idx_test_results_submission ON test_results (submission_id);
+CREATE INDEX idx_test_results_question_case ON test_results (question_id, case_index);
+
+-- Submission Outbox (queue tasks written with their submission, deleted once relayed to Redis)
+CREATE TABLE submission_outbox (
+    id SERIAL PRIMARY KEY,
+    submission_id INTEGER NOT NULL REFERENCES submissions(id) ON DELETE CASCADE,
+    payload TEXT NOT NULL, -- SubmissionTask JSON
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
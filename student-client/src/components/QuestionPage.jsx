@@ -8,7 +8,7 @@ const getBadgeClass = (status) => {
         if (s === "PASSED" || s === "FINISHED" || s === "ACCEPTED") {
                 return "bg-emerald-100 text-emerald-700";
         }
-        if (s === "FAILED" || s === "WRONG_ANSWER" || s === "ERROR") {
+        if (s === "FAILED" || s === "WRONG_ANSWER" || s === "ERROR" || s === "COMPILATION_ERROR") {
                 return "bg-red-100 text-red-700";
         }
         if (s === "RUNNING" || s === "PROCESSING" || s === "PENDING") {
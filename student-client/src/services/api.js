@@ -64,8 +64,9 @@ export const submitCode = async (questionId, code, language, type = "SUBMISSION"
     return response.json();
 };
 
-export const fetchSubmissions = async () => {
-    const response = await fetch(`${API_BASE_URL}/api/submissions`, {
+// Returns { items, page, hasMore }; items carry no code or results (fetch a submission by id for those)
+export const fetchSubmissions = async (page = 0, size = 20) => {
+    const response = await fetch(`${API_BASE_URL}/api/submissions?page=${page}&size=${size}`, {
         credentials: "include",
     });
     if (!response.ok) {
@@ -73,3 +74,14 @@ export const fetchSubmissions = async () => {
     }
     return response.json();
 };
+
+// Latest graded verdict per question: [{ questionId, submissionId, status, createdAt }]
+export const fetchLatestVerdicts = async () => {
+    const response = await fetch(`${API_BASE_URL}/api/submissions/latest`, {
+        credentials: "include",
+    });
+    if (!response.ok) {
+        throw new Error("Failed to fetch latest verdicts");
+    }
+    return response.json();
+};